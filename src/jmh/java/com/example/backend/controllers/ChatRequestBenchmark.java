@@ -0,0 +1,58 @@
+package com.example.backend.controllers;
+
+import com.example.backend.utils.BenchmarkData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading a chat request that carries the whole conversation: deserializing the body the way Spring MVC
+ * does (Jackson into a Map) and finding the last user message with {@link MainController#extractLastUserMessage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatRequestBenchmark {
+
+    @Param({"10", "200", "2000"})
+    public int turns;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Map<String, Object>> messages;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        messages = BenchmarkData.conversation(turns);
+        payload = objectMapper.writeValueAsBytes(Map.of("messages", messages));
+    }
+
+    @Benchmark
+    public String extractLastUserMessage() {
+        return MainController.extractLastUserMessage(messages);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String readPayloadAndExtract() throws IOException {
+        Map<String, Object> body = objectMapper.readValue(payload, Map.class);
+        return MainController.extractLastUserMessage((List<Map<String, Object>>) body.get("messages"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.backend.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores JMH results as the baseline and compares later runs against it, by average time and by allocated
+ * bytes per operation (gc.alloc.rate.norm from the gc profiler). Run through the jmh Maven profile:
+ * <pre>
+ *     mvn -Pjmh exec:exec@jmh-save-baseline   # target/jmh-result.json becomes src/jmh/baseline/jmh-baseline.json
+ *     mvn -Pjmh exec:exec@jmh-compare         # fails if a benchmark got slower or allocates more than allowed
+ * </pre>
+ */
+public final class BenchmarkBaseline {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private BenchmarkBaseline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("save")) {
+            Path baseline = Path.of(args[2]);
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(Path.of(args[1]), baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Saved " + args[1] + " as baseline " + baseline);
+        } else if (args.length >= 4 && args[0].equals("compare")) {
+            boolean regressed = compare(Path.of(args[1]), Path.of(args[2]), Double.parseDouble(args[3]));
+            if (regressed) {
+                System.exit(1);
+            }
+        } else {
+            System.err.println("Usage: save <result> <baseline> | compare <result> <baseline> <max-regression>");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * @return Whether any benchmark regressed by more than the allowed ratio, e.g. 0.1 for 10%
+     */
+    private static boolean compare(Path resultFile, Path baselineFile, double maxRegression) throws IOException {
+        if (!Files.exists(baselineFile)) {
+            System.out.println("No baseline at " + baselineFile + ", save one with exec:exec@jmh-save-baseline");
+            return false;
+        }
+        Map<String, Result> baseline = read(baselineFile);
+        Map<String, Result> current = read(resultFile);
+
+        boolean regressed = false;
+        System.out.printf("%-80s %14s %14s %8s %14s %14s %8s%n", "Benchmark", "base time", "time", "change", "base B/op", "B/op", "change");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %8s%n", entry.getKey(), "-", now.score(), "new");
+                continue;
+            }
+            double timeChange = change(before.score(), now.score());
+            double allocationChange = change(before.allocatedBytes(), now.allocatedBytes());
+            boolean worse = timeChange > maxRegression || allocationChange > maxRegression;
+            regressed |= worse;
+            System.out.printf("%-80s %14.3f %14.3f %+7.1f%% %14.0f %14.0f %+7.1f%%%s%n", entry.getKey(),
+                    before.score(), now.score(), timeChange * 100, before.allocatedBytes(), now.allocatedBytes(),
+                    allocationChange * 100, worse ? "  REGRESSION" : "");
+        }
+        return regressed;
+    }
+
+    private static double change(double before, double now) {
+        return before == 0 ? 0 : (now - before) / before;
+    }
+
+    private static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonElement element : JsonParser.parseString(Files.readString(file)).getAsJsonArray()) {
+            JsonObject run = element.getAsJsonObject();
+            StringBuilder key = new StringBuilder(run.get("benchmark").getAsString());
+            if (run.has("params")) {
+                Map<String, String> params = new TreeMap<>();
+                run.getAsJsonObject("params").entrySet().forEach(param -> params.put(param.getKey(), param.getValue().getAsString()));
+                params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            }
+            double score = run.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+            JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+            double allocated = secondary != null && secondary.has(ALLOCATION_METRIC)
+                    ? secondary.getAsJsonObject(ALLOCATION_METRIC).get("score").getAsDouble()
+                    : 0;
+            results.put(key.toString(), new Result(score, allocated));
+        }
+        return results;
+    }
+
+    private record Result(double score, double allocatedBytes) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.backend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realistic payloads shared by the benchmarks.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * A conversation in Gemini API format, alternating between user and model turns and ending with a user turn.
+     */
+    public static List<Map<String, Object>> conversation(int turns) {
+        List<Map<String, Object>> messages = new ArrayList<>(turns);
+        for (int i = turns - 1; i >= 0; i--) {
+            String role = i % 2 == 0 ? "user" : "model";
+            String text = role.equals("user")
+                    ? "Can you write something about our new seasonal latte, take " + i + "?"
+                    : "Sure! Our seasonal latte blends espresso with cinnamon and oat milk, reply " + i + ".";
+            messages.add(Map.of("role", role, "parts", List.of(Map.of("text", text))));
+        }
+        return messages;
+    }
+
+    /**
+     * Messages of existing page posts, as used for the unique post prompt.
+     */
+    public static List<String> postMessages(int posts) {
+        List<String> messages = new ArrayList<>(posts);
+        for (int i = 0; i < posts; i++) {
+            messages.add("Start your morning with our house blend, freshly roasted batch #" + i + " \u2615");
+        }
+        return messages;
+    }
+
+    /**
+     * A Graph API page feed response with the default fields; every fifth post has no message (e.g. a shared photo).
+     */
+    public static String pageFeed(int posts) {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < posts; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append("{\"created_time\": \"2024-05-0").append(i % 9 + 1).append("T08:30:00+0000\", ");
+            if (i % 5 != 4) {
+                data.append("\"message\": \"Start your morning with our house blend, freshly roasted batch #").append(i).append("\", ");
+            }
+            data.append("\"id\": \"1234567890_").append(9876543210L + i).append("\"}");
+        }
+        return """
+                {"data": [%s], "paging": {"cursors": {"before": "QVFIUmxx", "after": "QVFIUmyy"},
+                 "next": "https://graph.facebook.com/v19.0/1234567890/feed?limit=25&after=QVFIUmyy"}}
+                """.formatted(data);
+    }
+
+    /**
+     * A generateContent response shaped like the ones Gemini returns: two candidates with safety ratings
+     * and citation metadata, followed by usage metadata.
+     */
+    public static String geminiResponse(String text) {
+        String escaped = text.replace("\"", "\\\"");
+        String safetyRatings = """
+                "safetyRatings": [
+                  {"category": "HARM_CATEGORY_SEXUALLY_EXPLICIT", "probability": "NEGLIGIBLE"},
+                  {"category": "HARM_CATEGORY_HATE_SPEECH", "probability": "NEGLIGIBLE"},
+                  {"category": "HARM_CATEGORY_HARASSMENT", "probability": "NEGLIGIBLE"},
+                  {"category": "HARM_CATEGORY_DANGEROUS_CONTENT", "probability": "NEGLIGIBLE"}
+                ]""";
+        String candidate = """
+                {
+                  "content": {"parts": [{"text": "%s"}], "role": "model"},
+                  "finishReason": "STOP",
+                  "index": %d,
+                  %s,
+                  "citationMetadata": {"citationSources": [{"startIndex": 0, "endIndex": 42, "uri": "https://example.com/coffee"}]},
+                  "avgLogprobs": -0.1234
+                }""";
+        return """
+                {
+                  "candidates": [%s, %s],
+                  "usageMetadata": {"promptTokenCount": 512, "candidatesTokenCount": 128, "totalTokenCount": 640},
+                  "modelVersion": "gemini-1.5-flash"
+                }""".formatted(candidate.formatted(escaped, 0, safetyRatings), candidate.formatted(escaped, 1, safetyRatings));
+    }
+}
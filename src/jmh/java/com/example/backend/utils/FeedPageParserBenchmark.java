@@ -0,0 +1,72 @@
+package com.example.backend.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former parsing of a Graph API page feed, a String body read into a JsonObject tree,
+ * with {@link FeedPageParser} reading the response bytes.
+ * Run with the gc profiler (enabled by the jmh Maven profile) to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedPageParserBenchmark {
+
+    @Param({"25", "100"})
+    public int posts;
+
+    private final Gson gson = new Gson();
+    private byte[] feed;
+
+    @Setup
+    public void setUp() {
+        feed = BenchmarkData.pageFeed(posts).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> treeParsing() {
+        JsonObject data = gson.fromJson(new String(feed, StandardCharsets.UTF_8), JsonObject.class);
+        List<String> messages = new ArrayList<>();
+        JsonArray postsArray = data.getAsJsonArray("data");
+        for (JsonElement postElement : postsArray) {
+            JsonObject post = postElement.getAsJsonObject();
+            if (post.has("message")) {
+                messages.add(post.getAsJsonPrimitive("message").getAsString());
+            }
+        }
+        return messages;
+    }
+
+    @Benchmark
+    public FeedPage streamingParser() throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(feed), StandardCharsets.UTF_8)) {
+            return FeedPageParser.parse(reader);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.backend.utils;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON work of one {@link GeminiAiService#generateText} call outside the network round trip:
+ * serializing the request body, which happens for the single-flight key and again in the client,
+ * estimating its tokens for the rate limiter, and parsing the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiRequestBenchmark {
+
+    @Param({"10", "200"})
+    public int turns;
+
+    private final Gson gson = new Gson();
+    private Map<String, Object> body;
+    private String response;
+
+    @Setup
+    public void setUp() {
+        List<Map<String, Object>> messages = BenchmarkData.conversation(turns);
+        body = Map.of("contents", messages);
+        response = BenchmarkData.geminiResponse("Our seasonal latte is back! Cinnamon, oat milk and a double shot of espresso.");
+    }
+
+    @Benchmark
+    public String serializeRequest() {
+        return gson.toJson(body);
+    }
+
+    @Benchmark
+    public int generateTextRequestPath() {
+        String flightKey = PromptHash.of(gson.toJson(body));
+        String json = gson.toJson(body);
+        return flightKey.length() + TokenEstimator.estimate(json);
+    }
+
+    @Benchmark
+    public GeminiResponse parseResponse() throws IOException {
+        return GeminiResponseParser.parse(new StringReader(response));
+    }
+}
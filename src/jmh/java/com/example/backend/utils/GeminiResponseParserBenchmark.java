@@ -0,0 +1,74 @@
+package com.example.backend.utils;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former Map-based parsing of Gemini responses with {@link GeminiResponseParser}.
+ * Run with the gc profiler (enabled by the jmh Maven profile) to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiResponseParserBenchmark {
+
+    @Param({"1", "20"})
+    public int paragraphs;
+
+    private final Gson gson = new Gson();
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < paragraphs; i++) {
+            text.append("Fresh roasted beans every morning, paragraph ").append(i).append(". ");
+        }
+        response = BenchmarkData.geminiResponse(text.toString()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String mapDeserialization() throws IOException {
+        try (Reader reader = reader()) {
+            Map<String, Object> responseData = gson.fromJson(reader, Map.class);
+            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseData.get("candidates");
+            Map<String, Object> content = (Map<String, Object>) candidates.get(0).get("content");
+            List<Map<String, String>> parts = (List<Map<String, String>>) content.get("parts");
+            return parts.get(0).get("text");
+        }
+    }
+
+    @Benchmark
+    public String streamingParser() throws IOException {
+        try (Reader reader = reader()) {
+            return GeminiResponseParser.parse(reader).text();
+        }
+    }
+
+    private Reader reader() {
+        return new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8);
+    }
+}
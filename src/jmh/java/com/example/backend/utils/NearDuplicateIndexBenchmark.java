@@ -0,0 +1,50 @@
+package com.example.backend.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing a page's posts into a {@link NearDuplicateIndex} and checking a generated post against it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearDuplicateIndexBenchmark {
+
+    @Param({"100", "500"})
+    public int posts;
+
+    private List<String> existingMessages;
+    private NearDuplicateIndex index;
+
+    @Setup
+    public void setUp() {
+        existingMessages = BenchmarkData.postMessages(posts);
+        index = NearDuplicateIndex.of(existingMessages);
+    }
+
+    @Benchmark
+    public NearDuplicateIndex buildIndex() {
+        return NearDuplicateIndex.of(existingMessages);
+    }
+
+    @Benchmark
+    public String findNearDuplicate() {
+        return index.findNearDuplicate("Try our seasonal pumpkin spice latte, only this week at the counter", 0.3);
+    }
+}
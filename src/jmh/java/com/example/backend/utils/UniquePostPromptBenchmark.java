@@ -0,0 +1,43 @@
+package com.example.backend.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the unique post prompt ({@link GeminiAiService#createUniquePostPrompt}) for pages with many posts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UniquePostPromptBenchmark {
+
+    @Param({"100", "500"})
+    public int posts;
+
+    private List<String> existingMessages;
+
+    @Setup
+    public void setUp() {
+        existingMessages = BenchmarkData.postMessages(posts);
+    }
+
+    @Benchmark
+    public String uniquePostPrompt() {
+        return GeminiAiService.uniquePostPrompt(existingMessages);
+    }
+}
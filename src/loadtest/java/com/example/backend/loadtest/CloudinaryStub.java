@@ -0,0 +1,32 @@
+package com.example.backend.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for Cloudinary's upload API, POST /v1_1/{cloud}/image/upload, reached through the SDK's upload_prefix.
+ */
+class CloudinaryStub extends StubServer {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    CloudinaryStub(int port, StubBehavior behavior) throws IOException {
+        super("cloudinary", port, behavior);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.endsWith("/upload")) {
+            send(exchange, 404, "application/json", "{\"error\": {\"message\": \"Unknown path " + path + "\"}}");
+            return;
+        }
+        String publicId = "loadtest/image" + ids.incrementAndGet();
+        String url = baseUrl() + "/" + publicId + ".jpg";
+        send(exchange, 200, "application/json", """
+                {"public_id": "%s", "format": "jpg", "resource_type": "image", "bytes": %d, "url": "%s", "secure_url": "%s"}"""
+                .formatted(publicId, requestBody.length, url, url));
+    }
+}
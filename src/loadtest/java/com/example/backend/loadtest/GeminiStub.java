@@ -0,0 +1,75 @@
+package com.example.backend.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for Gemini's generateContent and streamGenerateContent endpoints.
+ * Classification prompts are answered with the JSON object the backend asks for: "scheduled_post" with the latest
+ * time found in the prompt when the user asks to schedule a post, "post" when they ask to post now, otherwise
+ * "chat" with a reply. Every other prompt gets a short generated sentence.
+ */
+class GeminiStub extends StubServer {
+
+    private static final String CLASSIFICATION_MARKER = "Reply with a single JSON object only";
+    private static final Pattern SCHEDULE_TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}");
+
+    private final AtomicLong generated = new AtomicLong();
+
+    GeminiStub(int port, StubBehavior behavior) throws IOException {
+        super("gemini", port, behavior);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String prompt = new String(requestBody, StandardCharsets.UTF_8);
+        String text = prompt.contains(CLASSIFICATION_MARKER) ? classification(prompt) : sentence();
+
+        if (path.endsWith(":streamGenerateContent")) {
+            StringBuilder events = new StringBuilder();
+            for (String word : text.split(" ")) {
+                events.append("data: ").append(response(word + " ")).append("\n\n");
+            }
+            send(exchange, 200, "text/event-stream", events.toString());
+        } else if (path.endsWith(":generateContent")) {
+            send(exchange, 200, "application/json", response(text));
+        } else {
+            send(exchange, 404, "application/json", "{\"error\": {\"code\": 404, \"message\": \"Unknown path " + path + "\"}}");
+        }
+    }
+
+    private String classification(String prompt) {
+        String lower = prompt.toLowerCase();
+        if (lower.contains("schedule a post")) {
+            String latest = null;
+            Matcher matcher = SCHEDULE_TIME.matcher(prompt);
+            while (matcher.find()) {
+                if (latest == null || matcher.group().compareTo(latest) > 0) {
+                    latest = matcher.group();
+                }
+            }
+            return "{\"intent\": \"scheduled_post\", \"scheduledTime\": \"" + latest + "\", \"reply\": null}";
+        }
+        if (lower.contains("post now")) {
+            return "{\"intent\": \"post\", \"scheduledTime\": null, \"reply\": null}";
+        }
+        return "{\"intent\": \"chat\", \"scheduledTime\": null, \"reply\": \"" + jsonString(sentence()) + "\"}";
+    }
+
+    private String sentence() {
+        return "Fresh beans, fresh mornings: our roast #" + generated.incrementAndGet() + " is waiting for you!";
+    }
+
+    private static String response(String text) {
+        return """
+                {"candidates": [{"content": {"parts": [{"text": "%s"}], "role": "model"}, "finishReason": "STOP", "index": 0}],
+                 "usageMetadata": {"promptTokenCount": 256, "candidatesTokenCount": 32, "totalTokenCount": 288}}"""
+                .formatted(jsonString(text)).replace("\n", "");
+    }
+}
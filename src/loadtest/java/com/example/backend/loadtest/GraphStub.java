@@ -0,0 +1,86 @@
+package com.example.backend.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for the Graph API: GET /{version}/{pageId}/feed returns feedSize posts in pages of the requested limit,
+ * linked by paging.next with the post offset as the after cursor.
+ * POST /{version}/{pageId}/feed and /photos publish a post and return its id.
+ */
+class GraphStub extends StubServer {
+
+    private final int feedSize;
+    private final AtomicLong ids = new AtomicLong(1_000_000);
+    private final LongAdder feedPosts = new LongAdder();
+    private final LongAdder photoPosts = new LongAdder();
+
+    GraphStub(int port, StubBehavior behavior, int feedSize) throws IOException {
+        super("graph", port, behavior);
+        this.feedSize = feedSize;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String pageId = path.split("/").length > 2 ? path.split("/")[2] : "page";
+        boolean post = exchange.getRequestMethod().equalsIgnoreCase("POST");
+
+        if (path.endsWith("/feed") && !post) {
+            send(exchange, 200, "application/json", feed(path, pageId, query(exchange.getRequestURI().getRawQuery())));
+        } else if (path.endsWith("/feed")) {
+            feedPosts.increment();
+            send(exchange, 200, "application/json", "{\"id\": \"" + pageId + "_" + ids.incrementAndGet() + "\"}");
+        } else if (path.endsWith("/photos")) {
+            photoPosts.increment();
+            long id = ids.incrementAndGet();
+            send(exchange, 200, "application/json", "{\"id\": \"" + id + "\", \"post_id\": \"" + pageId + "_" + id + "\"}");
+        } else {
+            send(exchange, 404, "application/json", "{\"error\": {\"message\": \"Unknown path " + path + "\", \"code\": 803}}");
+        }
+    }
+
+    private String feed(String path, String pageId, Map<String, String> query) {
+        int from = Integer.parseInt(query.getOrDefault("after", "0"));
+        int limit = Integer.parseInt(query.getOrDefault("limit", "25"));
+        int to = Math.min(feedSize, from + limit);
+        StringBuilder data = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                data.append(',');
+            }
+            data.append("{\"created_time\": \"2024-05-01T08:30:00+0000\", \"message\": \"Our house blend, batch #")
+                    .append(i).append("\", \"id\": \"").append(pageId).append('_').append(i).append("\"}");
+        }
+        String paging = "\"cursors\": {\"before\": \"" + from + "\", \"after\": \"" + to + "\"}";
+        if (to < feedSize) {
+            paging += ", \"next\": \"" + baseUrl() + path + "?fields=" + query.getOrDefault("fields", "")
+                    + "&limit=" + limit + "&after=" + to + "&access_token=" + query.getOrDefault("access_token", "") + "\"";
+        }
+        return "{\"data\": [" + data + "], \"paging\": {" + paging + "}}";
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(pair[0], pair.length > 1 ? pair[1] : "");
+            }
+        }
+        return parameters;
+    }
+
+    long getFeedPostCount() {
+        return feedPosts.sum();
+    }
+
+    long getPhotoPostCount() {
+        return photoPosts.sum();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.backend.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Drives endpoints at a fixed arrival rate (an open model): requests are started on schedule whether or not earlier
+ * ones have finished, so a slow backend shows up as rising latency instead of silently lowering the load.
+ * Latency is measured from the time a request was due, not from when it was sent, so a late start caused by the
+ * generator itself is counted too. Requests started during the warmup are not recorded.
+ */
+final class LoadGenerator {
+
+    /**
+     * One driven endpoint.
+     *
+     * @param name    The name used in the report
+     * @param rps     Target requests per second
+     * @param request Builds the n-th request
+     */
+    record Scenario(String name, double rps, LongFunction<HttpRequest> request) {
+    }
+
+    private final HttpClient client;
+    private final ScheduledExecutorService ticker = Executors.newScheduledThreadPool(2);
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    LoadGenerator(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Runs all scenarios for the warmup plus the measured duration, then waits up to the given time
+     * for requests that are still in flight.
+     */
+    Map<String, EndpointStats> run(List<Scenario> scenarios, Duration warmup, Duration duration, Duration inFlightGrace)
+            throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + warmup.toNanos();
+        long endNanos = measureFromNanos + duration.toNanos();
+
+        for (Scenario scenario : scenarios) {
+            if (scenario.rps() <= 0) {
+                continue;
+            }
+            EndpointStats endpoint = stats.computeIfAbsent(scenario.name(), EndpointStats::new);
+            long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / scenario.rps());
+            AtomicLong ticks = new AtomicLong();
+            ticker.scheduleAtFixedRate(() -> {
+                long n = ticks.getAndIncrement();
+                long dueNanos = startNanos + n * periodNanos;
+                if (dueNanos >= endNanos) {
+                    return;
+                }
+                boolean measured = dueNanos >= measureFromNanos;
+                HttpRequest request;
+                try {
+                    request = scenario.request().apply(n);
+                } catch (RuntimeException e) {
+                    endpoint.failed(measured);
+                    return;
+                }
+                endpoint.sent(measured);
+                client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    if (error != null) {
+                        endpoint.failed(measured);
+                    } else {
+                        endpoint.completed(measured, response.statusCode(), System.nanoTime() - dueNanos);
+                    }
+                });
+            }, 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, endNanos - System.nanoTime()));
+        ticker.shutdownNow();
+        long graceEnd = System.nanoTime() + inFlightGrace.toNanos();
+        while (System.nanoTime() < graceEnd && stats.values().stream().anyMatch(EndpointStats::hasInFlight)) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return stats;
+    }
+
+    /**
+     * Results of one endpoint over the measured window.
+     */
+    static final class EndpointStats {
+
+        private final String name;
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder finished = new LongAdder();
+        private final LongAdder measuredSent = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        EndpointStats(String name) {
+            this.name = name;
+        }
+
+        void sent(boolean measured) {
+            sent.increment();
+            if (measured) {
+                measuredSent.increment();
+            }
+        }
+
+        void completed(boolean measured, int status, long latencyNanos) {
+            finished.increment();
+            if (measured) {
+                statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                latencies.add(latencyNanos);
+            }
+        }
+
+        void failed(boolean measured) {
+            finished.increment();
+            if (measured) {
+                failures.increment();
+            }
+        }
+
+        boolean hasInFlight() {
+            return finished.sum() < sent.sum();
+        }
+
+        long countWithStatus(int status) {
+            LongAdder count = statuses.get(status);
+            return count == null ? 0 : count.sum();
+        }
+
+        String report(Duration duration) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            Map<Integer, Long> statusCounts = new TreeMap<>();
+            statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+            double seconds = duration.toMillis() / 1000.0;
+
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%-10s sent=%d completed=%d failed=%d throughput=%.1f/s statuses=%s",
+                    name, measuredSent.sum(), sorted.length, failures.sum(), sorted.length / seconds, statusCounts));
+            lines.add(String.format("%-10s latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    "", percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6));
+            return String.join("\n", lines);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+}
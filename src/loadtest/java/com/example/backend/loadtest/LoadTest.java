@@ -0,0 +1,224 @@
+package com.example.backend.loadtest;
+
+import com.example.backend.BackendApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline load test: starts local stubs for Gemini, the Graph API and Cloudinary, boots the backend against them
+ * with the loadtest Spring profile, and drives /chat, /chat/upload and scheduled posts at target rates.
+ * Reports throughput and latency percentiles per endpoint, what the stubs received, and how many scheduled posts
+ * reached the Graph stub. Run with {@code ./mvnw -Ploadtest test-compile exec:java}; settings are system properties:
+ * <ul>
+ *     <li>loadtest.chat.rps, loadtest.upload.rps, loadtest.scheduled.rps: target rates (defaults 10, 1, 0.5)</li>
+ *     <li>loadtest.warmup, loadtest.duration: e.g. 10s and 60s</li>
+ *     <li>loadtest.sessions: number of simulated pages/sessions (default 20)</li>
+ *     <li>loadtest.base-url: drive an already running backend instead of starting one</li>
+ *     <li>stub.gemini.*, stub.graph.*, stub.cloudinary.*: port, median, p99, error-rate, throttle-rate, retry-after</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private static final DateTimeFormatter SCHEDULE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final String[] CHAT_MESSAGES = {
+            "What drinks would you recommend for a rainy afternoon?",
+            "Can you suggest a caption for our new oat milk latte?",
+            "Which pastries go well with a dark roast?",
+            "Give me three ideas for a weekend promotion.",
+    };
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Duration warmup = LoadTestSettings.duration("loadtest.warmup", Duration.ofSeconds(10));
+        Duration duration = LoadTestSettings.duration("loadtest.duration", Duration.ofSeconds(60));
+        Duration scheduleLead = LoadTestSettings.duration("loadtest.scheduled.lead", Duration.ofMinutes(2));
+        int sessionCount = LoadTestSettings.integer("loadtest.sessions", 20);
+
+        GeminiStub gemini = new GeminiStub(LoadTestSettings.integer("stub.gemini.port", 9101),
+                StubBehavior.fromSystemProperties("gemini", Duration.ofMillis(800), Duration.ofMillis(3000)));
+        GraphStub graph = new GraphStub(LoadTestSettings.integer("stub.graph.port", 9102),
+                StubBehavior.fromSystemProperties("graph", Duration.ofMillis(150), Duration.ofMillis(600)),
+                LoadTestSettings.integer("stub.graph.feed-size", 25));
+        CloudinaryStub cloudinary = new CloudinaryStub(LoadTestSettings.integer("stub.cloudinary.port", 9103),
+                StubBehavior.fromSystemProperties("cloudinary", Duration.ofMillis(400), Duration.ofMillis(1500)));
+        List<StubServer> stubs = List.of(gemini, graph, cloudinary);
+        stubs.forEach(StubServer::start);
+
+        ConfigurableApplicationContext backend = null;
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(16);
+        try {
+            String baseUrl = System.getProperty("loadtest.base-url");
+            if (baseUrl == null || baseUrl.isBlank()) {
+                int port = LoadTestSettings.integer("loadtest.port", 8080);
+                backend = startBackend(port, gemini, graph, cloudinary);
+                baseUrl = "http://localhost:" + port;
+            }
+
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(clientExecutor)
+                    .build();
+            List<String> sessions = createSessions(client, baseUrl, sessionCount);
+            System.out.println("✅ Created " + sessions.size() + " sessions, warming up for " + warmup.toSeconds() + "s, measuring for " + duration.toSeconds() + "s");
+
+            String target = baseUrl;
+            byte[] image = sampleImage();
+            List<LoadGenerator.Scenario> scenarios = List.of(
+                    new LoadGenerator.Scenario("chat", LoadTestSettings.number("loadtest.chat.rps", 10),
+                            n -> chatRequest(target, session(sessions, n),
+                                    CHAT_MESSAGES[(int) (n % CHAT_MESSAGES.length)], "lt-" + (n % 100))),
+                    new LoadGenerator.Scenario("upload", LoadTestSettings.number("loadtest.upload.rps", 1),
+                            n -> uploadRequest(target, session(sessions, n), image)),
+                    new LoadGenerator.Scenario("scheduled", LoadTestSettings.number("loadtest.scheduled.rps", 0.5),
+                            n -> chatRequest(target, session(sessions, n),
+                                    "Please schedule a post about our autumn menu for "
+                                            + LocalDateTime.now().plus(scheduleLead).format(SCHEDULE_FORMAT), "lt-scheduled-" + n)));
+
+            Map<String, LoadGenerator.EndpointStats> results = new LoadGenerator(client)
+                    .run(scenarios, warmup, duration, Duration.ofSeconds(30));
+
+            System.out.println();
+            System.out.println("=== Endpoints (measured window of " + duration.toSeconds() + "s) ===");
+            results.values().forEach(stats -> System.out.println(stats.report(duration)));
+
+            LoadGenerator.EndpointStats scheduled = results.get("scheduled");
+            if (scheduled != null && scheduled.countWithStatus(200) > 0) {
+                awaitScheduledPosts(graph, scheduleLead);
+                System.out.println("scheduled  posts published by scheduled tasks (Graph /feed): " + graph.getFeedPostCount());
+                System.out.println("scheduled  task timings: " + fetch(client, target + "/actuator/metrics/chat.pipeline?tag=pipeline:scheduled-post"));
+            }
+
+            System.out.println();
+            System.out.println("=== Stubs ===");
+            stubs.forEach(stub -> System.out.println(stub.summary()));
+            System.out.println("graph      feed-posts=" + graph.getFeedPostCount() + " photo-posts=" + graph.getPhotoPostCount());
+        } finally {
+            clientExecutor.shutdownNow();
+            if (backend != null) {
+                backend.close();
+            }
+            stubs.forEach(StubServer::stop);
+        }
+    }
+
+    private static ConfigurableApplicationContext startBackend(int port, GeminiStub gemini, GraphStub graph, CloudinaryStub cloudinary) {
+        SpringApplication application = new SpringApplication(BackendApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        return application.run(
+                "--server.port=" + port,
+                "--gemini.api.base-url=" + gemini.baseUrl(),
+                "--facebook.graph.base-url=" + graph.baseUrl(),
+                "--cloudinary.upload-prefix=" + cloudinary.baseUrl());
+    }
+
+    /**
+     * Stores page data for each simulated page and keeps the session cookies the backend hands out.
+     */
+    private static List<String> createSessions(HttpClient client, String baseUrl, int count) throws IOException, InterruptedException {
+        List<String> cookies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String body = "{\"pageId\": \"loadtest-page-" + i + "\", \"pageAccessToken\": \"loadtest-token-" + i + "\"}";
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/chat/facebook/page-data"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            // The session cookie is marked Secure, so it is passed on by hand rather than by a cookie manager
+            response.headers().allValues("Set-Cookie").stream()
+                    .filter(cookie -> cookie.startsWith("JSESSIONID="))
+                    .findFirst()
+                    .map(cookie -> cookie.split(";", 2)[0])
+                    .ifPresent(cookies::add);
+        }
+        if (cookies.isEmpty()) {
+            throw new IllegalStateException("The backend did not hand out any session cookie");
+        }
+        return cookies;
+    }
+
+    private static String session(List<String> sessions, long n) {
+        return sessions.get((int) (n % sessions.size()));
+    }
+
+    private static HttpRequest chatRequest(String baseUrl, String cookie, String message, String conversationId) {
+        String body = "{\"message\": \"" + message.replace("\"", "\\\"") + "\", \"conversationId\": \"" + conversationId + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/chat"))
+                .timeout(Duration.ofSeconds(120))
+                .header("Content-Type", "application/json")
+                .header("Cookie", cookie)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest uploadRequest(String baseUrl, String cookie, byte[] image) {
+        String boundary = "loadtest" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"coffee.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(image);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/chat/upload"))
+                .timeout(Duration.ofSeconds(120))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .header("Cookie", cookie)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    /**
+     * A PNG signature followed by random bytes; neither the backend nor the stub decodes the image.
+     */
+    private static byte[] sampleImage() {
+        byte[] image = new byte[LoadTestSettings.integer("loadtest.upload.image-bytes", 64 * 1024)];
+        ThreadLocalRandom.current().nextBytes(image);
+        byte[] signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        System.arraycopy(signature, 0, image, 0, Math.min(signature.length, image.length));
+        return image;
+    }
+
+    /**
+     * Scheduled posts run at minute precision, so the last one is due up to the schedule lead plus a minute
+     * after the last scheduling request; the drain time covers the post itself.
+     */
+    private static void awaitScheduledPosts(GraphStub graph, Duration scheduleLead) throws InterruptedException {
+        Duration wait = scheduleLead.plusMinutes(1).plus(LoadTestSettings.duration("loadtest.scheduled.drain", Duration.ofSeconds(30)));
+        System.out.println("🕒 Waiting " + wait.toSeconds() + "s for scheduled posts to run");
+        long deadline = System.nanoTime() + wait.toNanos();
+        while (System.nanoTime() < deadline) {
+            TimeUnit.SECONDS.sleep(Math.min(15, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()))));
+            System.out.println("🕒 Scheduled posts published so far: " + graph.getFeedPostCount());
+        }
+    }
+
+    private static String fetch(HttpClient client, String url) {
+        try {
+            return client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+        } catch (IOException e) {
+            return "unavailable (" + e.getMessage() + ")";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unavailable";
+        }
+    }
+}
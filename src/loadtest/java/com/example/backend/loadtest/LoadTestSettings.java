@@ -0,0 +1,40 @@
+package com.example.backend.loadtest;
+
+import java.time.Duration;
+
+/**
+ * Reads the load test settings from system properties, with durations written like Spring's, e.g. 500ms, 30s or 2m.
+ */
+final class LoadTestSettings {
+
+    private LoadTestSettings() {
+    }
+
+    static Duration duration(String property, Duration defaultValue) {
+        String value = System.getProperty(property);
+        return value == null || value.isBlank() ? defaultValue : parseDuration(value.trim());
+    }
+
+    static double number(String property, double defaultValue) {
+        String value = System.getProperty(property);
+        return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    static int integer(String property, int defaultValue) {
+        String value = System.getProperty(property);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Unsupported duration: " + value);
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.backend.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a stub server answers: a log-normal latency given by its median and p99, a share of requests failing with
+ * a 500, and a share throttled with a 429 and a Retry-After header.
+ * Read from the system properties {@code stub.<name>.median}, {@code .p99}, {@code .error-rate},
+ * {@code .throttle-rate} and {@code .retry-after}, e.g. {@code -Dstub.gemini.p99=5s}.
+ */
+record StubBehavior(Duration median, Duration p99, double errorRate, double throttleRate, Duration retryAfter) {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    enum Outcome { OK, ERROR, THROTTLED }
+
+    static StubBehavior fromSystemProperties(String name, Duration defaultMedian, Duration defaultP99) {
+        String prefix = "stub." + name + ".";
+        return new StubBehavior(
+                LoadTestSettings.duration(prefix + "median", defaultMedian),
+                LoadTestSettings.duration(prefix + "p99", defaultP99),
+                LoadTestSettings.number(prefix + "error-rate", 0),
+                LoadTestSettings.number(prefix + "throttle-rate", 0),
+                LoadTestSettings.duration(prefix + "retry-after", Duration.ofSeconds(1)));
+    }
+
+    /**
+     * @return A latency drawn from the log-normal distribution with the configured median and p99
+     */
+    Duration sampleLatency() {
+        double medianMillis = Math.max(1, median.toMillis());
+        double sigma = Math.log(Math.max(p99.toMillis(), medianMillis) / medianMillis) / Z_99;
+        double millis = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofMillis(Math.round(millis));
+    }
+
+    Outcome sampleOutcome() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < throttleRate) {
+            return Outcome.THROTTLED;
+        }
+        return roll < throttleRate + errorRate ? Outcome.ERROR : Outcome.OK;
+    }
+
+    @Override
+    public String toString() {
+        return "median=" + median.toMillis() + "ms p99=" + p99.toMillis() + "ms errors=" + errorRate + " throttled=" + throttleRate;
+    }
+}
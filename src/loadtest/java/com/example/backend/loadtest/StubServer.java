@@ -0,0 +1,123 @@
+package com.example.backend.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base of the local stand-ins for the external APIs, built on the JDK's HTTP server.
+ * Every request is answered after a latency drawn from the stub's {@link StubBehavior}, either with an injected
+ * 500 or 429, or by the stub's own {@link #handle} method. Delayed answers are scheduled rather than slept,
+ * so a slow stub does not need a thread per waiting request.
+ */
+abstract class StubServer {
+
+    private final String name;
+    private final StubBehavior behavior;
+    private final HttpServer server;
+    private final ExecutorService readers = Executors.newFixedThreadPool(8);
+    private final ScheduledExecutorService responders = Executors.newScheduledThreadPool(4);
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    StubServer(String name, int port, StubBehavior behavior) throws IOException {
+        this.name = name;
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        this.server.createContext("/", this::dispatch);
+        this.server.setExecutor(readers);
+    }
+
+    void start() {
+        server.start();
+        System.out.println("🔌 " + name + " stub listening on " + baseUrl() + " (" + behavior + ")");
+    }
+
+    void stop() {
+        server.stop(0);
+        readers.shutdownNow();
+        responders.shutdownNow();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Answers a request that was neither failed nor throttled.
+     *
+     * @param requestBody The request body, read before the latency was applied
+     */
+    protected abstract void handle(HttpExchange exchange, byte[] requestBody) throws IOException;
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        requests.increment();
+        byte[] requestBody = exchange.getRequestBody().readAllBytes();
+        StubBehavior.Outcome outcome = behavior.sampleOutcome();
+        Duration latency = behavior.sampleLatency();
+        responders.schedule(() -> respond(exchange, requestBody, outcome), latency.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void respond(HttpExchange exchange, byte[] requestBody, StubBehavior.Outcome outcome) {
+        try {
+            switch (outcome) {
+                case THROTTLED -> {
+                    throttled.increment();
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(Math.max(1, behavior.retryAfter().toSeconds())));
+                    send(exchange, 429, "application/json", "{\"error\": {\"code\": 429, \"message\": \"Rate limit exceeded (stub)\"}}");
+                }
+                case ERROR -> {
+                    errors.increment();
+                    send(exchange, 500, "application/json", "{\"error\": {\"code\": 500, \"message\": \"Internal error (stub)\"}}");
+                }
+                case OK -> handle(exchange, requestBody);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ " + name + " stub could not answer " + exchange.getRequestURI() + ": " + e.getMessage());
+            exchange.close();
+        }
+    }
+
+    protected static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Escapes text for use inside a JSON string.
+     */
+    protected static String jsonString(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    String summary() {
+        return String.format("%-10s requests=%d injected-errors=%d injected-429=%d", name, requests.sum(), errors.sum(), throttled.sum());
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.backend.clients;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Bulkhead and circuit breaker for one external dependency, so a slow or failing upstream cannot take
+ * the rest of the application down with it.
+ * <ul>
+ *     <li>The bulkhead allows {@code max-concurrent} calls at a time; further calls wait in a queue of at most
+ *     {@code max-queue} calls for up to {@code max-wait}, and are rejected beyond that.</li>
+ *     <li>The circuit breaker opens when at least {@code failure-rate-threshold} of the last {@code window-size}
+ *     calls failed (once {@code min-calls} calls were made), and then rejects calls for {@code open-duration}.
+ *     Afterwards it lets {@code half-open-probes} calls through: if they all succeed it closes again,
+ *     otherwise it reopens.</li>
+ * </ul>
+ * Rejected calls fail with a {@link DependencyUnavailableException}. Only failures matching the dependency's
+ * failure predicate count against the breaker; e.g. a 400 response shows the upstream is alive.
+ * Settings are read from {@code dependency.<name>.*}. The breaker state, bulkhead usage and rejections are
+ * published as the dependency.* metrics, tagged with the dependency name.
+ */
+public class DependencyGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGuard.class);
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private enum Outcome { SUCCESS, FAILURE, IGNORED }
+
+    private final String name;
+    private final Predicate<Throwable> isFailure;
+    private final MeterRegistry meterRegistry;
+
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final double failureRateThreshold;
+    private final int minCalls;
+    private final Duration openDuration;
+    private final int halfOpenProbes;
+
+    // Bulkhead state, guarded by this
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private int active;
+
+    // Circuit breaker state, guarded by this
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param name      The dependency name, used for the settings, metrics and error messages
+     * @param isFailure Tells which errors indicate that the dependency is unhealthy
+     */
+    public DependencyGuard(String name, Predicate<Throwable> isFailure, Environment environment, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.isFailure = isFailure;
+        this.meterRegistry = meterRegistry;
+
+        String prefix = "dependency." + name + ".";
+        this.maxConcurrent = environment.getProperty(prefix + "max-concurrent", Integer.class, 20);
+        this.maxQueue = environment.getProperty(prefix + "max-queue", Integer.class, 50);
+        this.maxWait = environment.getProperty(prefix + "max-wait", Duration.class, Duration.ofSeconds(5));
+        this.failureRateThreshold = environment.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5);
+        this.window = new boolean[environment.getProperty(prefix + "window-size", Integer.class, 20)];
+        this.minCalls = environment.getProperty(prefix + "min-calls", Integer.class, 10);
+        this.openDuration = environment.getProperty(prefix + "open-duration", Duration.class, Duration.ofSeconds(30));
+        this.halfOpenProbes = environment.getProperty(prefix + "half-open-probes", Integer.class, 3);
+
+        Gauge.builder("dependency.circuit.state", this, guard -> guard.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("dependency.bulkhead.active", this, DependencyGuard::getActiveCount).tag("dependency", name).register(meterRegistry);
+        Gauge.builder("dependency.bulkhead.queued", this, DependencyGuard::getQueuedCount).tag("dependency", name).register(meterRegistry);
+    }
+
+    /**
+     * Runs a call through the circuit breaker and the bulkhead.
+     *
+     * @return The result of the call, or a {@link DependencyUnavailableException} if the call was rejected
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!tryAcquirePermission()) {
+                return Mono.error(rejected("circuit-open"));
+            }
+            AtomicBoolean admitted = new AtomicBoolean();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return acquireSlot()
+                    .then(Mono.defer(() -> {
+                        admitted.set(true);
+                        return call;
+                    }))
+                    .doOnSuccess(value -> record(recorded, Outcome.SUCCESS))
+                    .doOnError(e -> record(recorded, outcome(admitted.get(), e)))
+                    .doOnCancel(() -> record(recorded, Outcome.IGNORED))
+                    .doFinally(signal -> {
+                        if (admitted.get()) {
+                            releaseSlot();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #protect(Mono)}; the call holds its bulkhead slot until the stream terminates.
+     */
+    public <T> Flux<T> protectStream(Flux<T> call) {
+        return Flux.defer(() -> {
+            if (!tryAcquirePermission()) {
+                return Flux.error(rejected("circuit-open"));
+            }
+            AtomicBoolean admitted = new AtomicBoolean();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return acquireSlot()
+                    .thenMany(Flux.defer(() -> {
+                        admitted.set(true);
+                        return call;
+                    }))
+                    .doOnComplete(() -> record(recorded, Outcome.SUCCESS))
+                    .doOnError(e -> record(recorded, outcome(admitted.get(), e)))
+                    .doOnCancel(() -> record(recorded, Outcome.IGNORED))
+                    .doFinally(signal -> {
+                        if (admitted.get()) {
+                            releaseSlot();
+                        }
+                    });
+        });
+    }
+
+    private Outcome outcome(boolean admitted, Throwable error) {
+        if (!admitted) {
+            // Rejected by the bulkhead, the dependency itself was not called
+            return Outcome.IGNORED;
+        }
+        return isFailure.test(error) ? Outcome.FAILURE : Outcome.SUCCESS;
+    }
+
+    private DependencyUnavailableException rejected(String reason) {
+        meterRegistry.counter("dependency.rejected", "dependency", name, "reason", reason).increment();
+        Duration retryAfter = reason.equals("circuit-open") ? openDuration : maxWait;
+        return new DependencyUnavailableException(name, reason, retryAfter);
+    }
+
+    // Bulkhead
+
+    private Mono<Void> acquireSlot() {
+        return Mono.<Void>create(sink -> {
+                    Waiter waiter = new Waiter(sink);
+                    sink.onCancel(() -> {
+                        if (waiter.done.compareAndSet(false, true)) {
+                            synchronized (this) {
+                                queue.remove(waiter);
+                            }
+                        } else {
+                            // Cancelled while the slot was being handed over; the sink drops it, so give it back
+                            releaseSlot();
+                        }
+                    });
+
+                    boolean admitted = false;
+                    synchronized (this) {
+                        if (active < maxConcurrent) {
+                            if (waiter.done.compareAndSet(false, true)) {
+                                active++;
+                                admitted = true;
+                            }
+                        } else if (queue.size() < maxQueue) {
+                            queue.add(waiter);
+                        } else if (waiter.done.compareAndSet(false, true)) {
+                            sink.error(rejected("bulkhead-full"));
+                            return;
+                        }
+                    }
+                    if (admitted) {
+                        sink.success();
+                    }
+                })
+                .timeout(maxWait)
+                .onErrorMap(TimeoutException.class, e -> rejected("bulkhead-timeout"));
+    }
+
+    private void releaseSlot() {
+        Waiter next = null;
+        synchronized (this) {
+            while (!queue.isEmpty()) {
+                Waiter waiter = queue.poll();
+                if (waiter.done.compareAndSet(false, true)) {
+                    // The slot passes straight to the next waiter
+                    next = waiter;
+                    break;
+                }
+            }
+            if (next == null) {
+                active--;
+            }
+        }
+        if (next != null) {
+            next.sink.success();
+        }
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Void> sink;
+        // Set once the waiter is given a slot or gives up
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+    }
+
+    // Circuit breaker
+
+    private synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDuration.toNanos()) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+            logger.info("🔌 Circuit for {} is half-open, probing", name);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    private void record(AtomicBoolean recorded, Outcome outcome) {
+        if (recorded.compareAndSet(false, true)) {
+            onOutcome(outcome);
+        }
+    }
+
+    private synchronized void onOutcome(Outcome outcome) {
+        if (state == State.HALF_OPEN) {
+            switch (outcome) {
+                case FAILURE -> open();
+                case IGNORED -> probesStarted--;
+                case SUCCESS -> {
+                    if (++probesSucceeded >= halfOpenProbes) {
+                        close();
+                    }
+                }
+            }
+            return;
+        }
+        if (state == State.OPEN || outcome == Outcome.IGNORED) {
+            return;
+        }
+
+        boolean failure = outcome == Outcome.FAILURE;
+        if (windowCount == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+
+        if (windowCount >= minCalls && windowFailures >= windowCount * failureRateThreshold) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        logger.error("🚨 Circuit for {} opened, failing fast for {}s", name, openDuration.toSeconds());
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowNext = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        logger.info("✅ Circuit for {} closed", name);
+    }
+
+    private synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
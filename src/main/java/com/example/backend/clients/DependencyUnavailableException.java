@@ -0,0 +1,36 @@
+package com.example.backend.clients;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a call to an external dependency is rejected without being attempted,
+ * because its circuit breaker is open or its bulkhead is full.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private final String dependency;
+    private final String reason;
+    private final Duration retryAfter;
+
+    public DependencyUnavailableException(String dependency, String reason, Duration retryAfter) {
+        super(dependency + " is unavailable (" + reason + ")");
+        this.dependency = dependency;
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return How long the caller should wait before trying again
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.backend.clients;
+
+import com.example.backend.utils.Deadline;
+import com.example.backend.utils.GeminiResponse;
+import com.example.backend.utils.GeminiResponseParser;
+import com.example.backend.utils.TokenEstimator;
+import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Non-blocking HTTP client for the Gemini generateContent and streamGenerateContent endpoints.
+ * It deals with transport and response decoding; building prompts is left to GeminiAiService.
+ */
+@Component
+public class GeminiClient {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE = new ParameterizedTypeReference<>() {
+    };
+
+    private final WebClient webClient;
+    private final GeminiRateLimiter rateLimiter;
+    private final GeminiResilience resilience;
+    private final DependencyGuard guard;
+    private final Gson gson = new Gson();
+
+    @Value("${gemini.model:gemini-1.5-flash}")
+    private String model;
+
+    @Value("${outbound.http.total-timeout:60s}")
+    private Duration totalTimeout;
+
+    public GeminiClient(@Qualifier("geminiWebClient") WebClient webClient, GeminiRateLimiter rateLimiter,
+                        GeminiResilience resilience, @Qualifier("geminiGuard") DependencyGuard guard) {
+        this.webClient = webClient;
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+        this.guard = guard;
+    }
+
+    /**
+     * Sends a generateContent request.
+     * The response body is parsed straight from the received buffers with {@link GeminiResponseParser},
+     * without first copying it into a String. Each attempt is limited to the remaining request {@link Deadline}. Every attempt waits for a permit from the {@link GeminiRateLimiter};
+     * transient failures are retried and slow calls may be hedged by {@link GeminiResilience}. Only the HTTP exchange
+     * of each attempt runs inside the Gemini {@link DependencyGuard}, so waiting for a permit or a retry backoff does
+     * not hold a bulkhead slot.
+     *
+     * @param body The request body, e.g. a map with the "contents" list
+     * @return The generated text and token usage
+     */
+    public Mono<GeminiResponse> generateContent(Map<String, Object> body) {
+        String json = gson.toJson(body);
+        return resilience.execute(() -> rateLimiter.acquire(TokenEstimator.estimate(json))
+                .flatMap(permit -> guard.protect(Deadline.bound(webClient.post()
+                                .uri("/v1/models/{model}:generateContent", model)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(json)
+                                .retrieve()
+                                .bodyToFlux(DataBuffer.class)
+                                .as(DataBufferUtils::join)
+                                .map(GeminiClient::parseResponse), totalTimeout))
+                        .doOnSuccess(response -> permit.succeeded(response == null ? 0 : response.totalTokenCount()))
+                        .doOnError(permit::failed)
+                        .doOnCancel(permit::released)));
+    }
+
+    private static GeminiResponse parseResponse(DataBuffer buffer) {
+        try (Reader reader = new InputStreamReader(buffer.asInputStream(true), StandardCharsets.UTF_8)) {
+            return GeminiResponseParser.parse(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read Gemini response", e);
+        }
+    }
+
+    /**
+     * Sends a streamGenerateContent request and emits the data of each server-sent event as it arrives.
+     * Cancelling the subscription aborts the upstream call. The call waits for a permit from the
+     * {@link GeminiRateLimiter} first; its duration depends on the reply length, so it does not adjust the limit.
+     * Transient failures are retried as long as no chunk has been emitted yet. Once it has a permit, each attempt
+     * holds a slot of the Gemini {@link DependencyGuard} until it ends.
+     *
+     * @param body The request body, e.g. a map with the "contents" list
+     * @return The JSON payload of every streamed response chunk
+     */
+    public Flux<String> streamGenerateContent(Map<String, Object> body) {
+        String json = gson.toJson(body);
+        return resilience.executeStream(() -> rateLimiter.acquire(TokenEstimator.estimate(json))
+                .flatMapMany(permit -> guard.protectStream(webClient.post()
+                                .uri("/v1/models/{model}:streamGenerateContent?alt=sse", model)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.TEXT_EVENT_STREAM)
+                                .bodyValue(json)
+                                .retrieve()
+                                .bodyToFlux(SSE_TYPE)
+                                .mapNotNull(ServerSentEvent::data))
+                        .doOnComplete(permit::released)
+                        .doOnError(permit::failed)
+                        .doOnCancel(permit::released)));
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.backend.clients;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process limiter in front of the Gemini API, so bursts queue up here instead of failing with 429 responses.
+ * A call needs a permit, which combines:
+ * <ul>
+ *     <li>token buckets for the requests-per-minute and tokens-per-minute quota of the API key; the token cost
+ *     is estimated from the request and corrected with the usage Gemini reports, and</li>
+ *     <li>an adaptive concurrency limit (AIMD), adjusted once per window of completed calls, at least
+ *     {@code gemini.limiter.window-size} and at least the current limit: the limit grows by one while the median
+ *     latency of the window stays within {@code latency-tolerance} times the baseline, and shrinks
+ *     multiplicatively when it rises above, calls time out or Gemini answers 429. The baseline is a slow moving
+ *     average of the window medians, so it follows Gemini when it gets slower for good.</li>
+ * </ul>
+ * Callers wait in FIFO order until a permit is free, up to {@code gemini.limiter.max-wait}; after that the call
+ * fails with a {@link RateLimitExceededException}, telling the caller when the quota allows calls again. Queue depth, wait time, the current limit and throttling are
+ * published as the gemini.limiter.* metrics.
+ */
+@Component
+public class GeminiRateLimiter {
+
+    private final boolean enabled;
+    private final Duration maxWait;
+    private final int maxQueueSize;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double latencyTolerance;
+    private final int windowSize;
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+
+    // All state below is guarded by this
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    // Latencies of the successful calls in the current window, and the number of calls it has seen
+    private final long[] windowLatencies;
+    private int windowLatencyCount;
+    private int windowCalls;
+    private boolean overloadedInWindow;
+    private double baselineLatencyNanos;
+    private Disposable scheduledDrain;
+
+    private final Timer waitTimer;
+    private final Counter throttled;
+    private final Counter rejected;
+
+    public GeminiRateLimiter(MeterRegistry meterRegistry,
+                             @Value("${gemini.limiter.enabled:true}") boolean enabled,
+                             @Value("${gemini.limiter.requests-per-minute:1000}") int requestsPerMinute,
+                             @Value("${gemini.limiter.tokens-per-minute:1000000}") int tokensPerMinute,
+                             @Value("${gemini.limiter.initial-concurrency:10}") int initialLimit,
+                             @Value("${gemini.limiter.min-concurrency:1}") int minLimit,
+                             @Value("${gemini.limiter.max-concurrency:50}") int maxLimit,
+                             @Value("${gemini.limiter.latency-tolerance:2.0}") double latencyTolerance,
+                             @Value("${gemini.limiter.window-size:10}") int windowSize,
+                             @Value("${gemini.limiter.max-wait:30s}") Duration maxWait,
+                             @Value("${gemini.limiter.max-queue-size:1000}") int maxQueueSize) {
+        this.enabled = enabled;
+        this.maxWait = maxWait;
+        this.maxQueueSize = maxQueueSize;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.windowSize = Math.max(1, windowSize);
+        this.windowLatencies = new long[Math.max(this.windowSize, maxLimit)];
+        this.limit = initialLimit;
+        this.requestBucket = new TokenBucket(requestsPerMinute);
+        this.tokenBucket = new TokenBucket(tokensPerMinute);
+
+        this.waitTimer = Timer.builder("gemini.limiter.wait").publishPercentiles(0.5, 0.95, 0.99).register(meterRegistry);
+        this.throttled = meterRegistry.counter("gemini.limiter.throttled");
+        this.rejected = meterRegistry.counter("gemini.limiter.rejected");
+        Gauge.builder("gemini.limiter.queue.depth", this, GeminiRateLimiter::getQueueDepth).register(meterRegistry);
+        Gauge.builder("gemini.limiter.concurrency.limit", this, GeminiRateLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("gemini.limiter.in-flight", this, GeminiRateLimiter::getInFlight).register(meterRegistry);
+    }
+
+    /**
+     * Waits for a permit to call Gemini.
+     *
+     * @param estimatedTokens The estimated token cost of the call
+     * @return The permit, which must be completed with one of its methods once the call has finished.
+     *         Fails with a {@link RateLimitExceededException} if no permit is free within the maximum wait.
+     */
+    public Mono<Permit> acquire(int estimatedTokens) {
+        if (!enabled) {
+            return Mono.just(new Permit(0, false));
+        }
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter = new Waiter(sink, Math.max(1, estimatedTokens), System.nanoTime());
+                    synchronized (this) {
+                        if (queue.size() >= maxQueueSize) {
+                            sink.error(rejected("request queue is full", waiter.tokens));
+                            return;
+                        }
+                        queue.add(waiter);
+                    }
+                    sink.onCancel(() -> cancel(waiter));
+                    drain();
+                })
+                .timeout(maxWait)
+                .onErrorMap(TimeoutException.class, e -> {
+                    rejected.increment();
+                    return rejected("no permit within " + maxWait, estimatedTokens);
+                });
+    }
+
+    /**
+     * @return The rejection, asking the caller to come back once the buckets allow the call, or after a second
+     *         if only the concurrency limit is exhausted
+     */
+    private RateLimitExceededException rejected(String reason, int tokens) {
+        long refillNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            refillNanos = Math.max(requestBucket.nanosUntil(1, now), tokenBucket.nanosUntil(Math.max(1, tokens), now));
+        }
+        Duration retryAfter = Duration.ofNanos(refillNanos);
+        return new RateLimitExceededException("gemini", reason,
+                retryAfter.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : retryAfter);
+    }
+
+    private void cancel(Waiter waiter) {
+        if (waiter.done.compareAndSet(false, true)) {
+            synchronized (this) {
+                queue.remove(waiter);
+            }
+        } else if (waiter.permit != null) {
+            // Cancelled while the permit was being handed over; the sink drops it, so give it back
+            waiter.permit.released();
+        }
+    }
+
+    /**
+     * Hands out permits to the waiters at the head of the queue while the concurrency limit and the buckets allow it.
+     * If the buckets are empty, another drain is scheduled for when they have refilled enough.
+     */
+    private void drain() {
+        long waitNanos = 0;
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                Waiter head = queue.peek();
+                if (head.done.get()) {
+                    queue.poll();
+                    continue;
+                }
+                long now = System.nanoTime();
+                waitNanos = Math.max(requestBucket.nanosUntil(1, now), tokenBucket.nanosUntil(head.tokens, now));
+                if (waitNanos > 0) {
+                    break;
+                }
+                queue.poll();
+                Permit permit = new Permit(head.tokens, true);
+                head.permit = permit;
+                if (!head.done.compareAndSet(false, true)) {
+                    continue;
+                }
+                requestBucket.take(1, now);
+                tokenBucket.take(head.tokens, now);
+                inFlight++;
+                waitTimer.record(now - head.enqueuedNanos, TimeUnit.NANOSECONDS);
+                granted.add(head);
+            }
+            if (waitNanos > 0 && (scheduledDrain == null || scheduledDrain.isDisposed())) {
+                scheduledDrain = Schedulers.parallel().schedule(this::drain, waitNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        // Outside the lock, as the callers start their Gemini calls from here
+        for (Waiter waiter : granted) {
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    private synchronized void onCompleted(Permit permit, long latencyNanos, Throwable error, int actualTokens) {
+        inFlight--;
+        if (actualTokens > 0) {
+            // Replace the estimate with the usage Gemini reported
+            tokenBucket.take(actualTokens - permit.estimatedTokens, System.nanoTime());
+        }
+
+        if (error instanceof WebClientResponseException.TooManyRequests || error instanceof TimeoutException) {
+            if (error instanceof WebClientResponseException.TooManyRequests) {
+                throttled.increment();
+            }
+            // Cut once per window; the calls already in flight fail the same way and must not cut again
+            if (!overloadedInWindow) {
+                overloadedInWindow = true;
+                limit = Math.max(minLimit, limit * 0.7);
+            }
+            windowCalls++;
+        } else if (error == null && latencyNanos > 0) {
+            windowLatencies[windowLatencyCount++] = latencyNanos;
+            windowCalls++;
+        } else {
+            // Other failures, e.g. the request running out of time, say nothing about Gemini's load
+            return;
+        }
+
+        if (windowCalls >= Math.max(windowSize, (int) limit) || windowLatencyCount == windowLatencies.length) {
+            endWindow();
+        }
+    }
+
+    /**
+     * Compares the median latency of the window with the baseline and adjusts the limit once for the whole window.
+     * Callers hold the monitor.
+     */
+    private void endWindow() {
+        if (windowLatencyCount > 0) {
+            long[] latencies = Arrays.copyOf(windowLatencies, windowLatencyCount);
+            Arrays.sort(latencies);
+            long median = latencies[latencies.length / 2];
+
+            if (baselineLatencyNanos == 0) {
+                baselineLatencyNanos = median;
+            }
+            if (!overloadedInWindow) {
+                if (median > baselineLatencyNanos * latencyTolerance) {
+                    limit = Math.max(minLimit, limit * 0.9);
+                } else {
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+            }
+            // Roughly the average of the last 20 windows
+            baselineLatencyNanos += (median - baselineLatencyNanos) * 0.05;
+        }
+        windowLatencyCount = 0;
+        windowCalls = 0;
+        overloadedInWindow = false;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Permission for one Gemini call. Exactly one of the completion methods takes effect, later calls are ignored.
+     */
+    public final class Permit {
+
+        private final int estimatedTokens;
+        private final boolean limited;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int estimatedTokens, boolean limited) {
+            this.estimatedTokens = estimatedTokens;
+            this.limited = limited;
+        }
+
+        /**
+         * Completes a call whose latency reflects Gemini's load, i.e. a non-streamed generateContent call.
+         *
+         * @param actualTokens The total token count Gemini reported, or 0 if unknown
+         */
+        public void succeeded(int actualTokens) {
+            complete(System.nanoTime() - startNanos, null, actualTokens);
+        }
+
+        /**
+         * Completes a call without using its latency, e.g. a streamed call whose duration depends on the reply length.
+         */
+        public void released() {
+            complete(0, null, 0);
+        }
+
+        public void failed(Throwable error) {
+            complete(0, error, 0);
+        }
+
+        private void complete(long latencyNanos, Throwable error, int actualTokens) {
+            if (limited && released.compareAndSet(false, true)) {
+                onCompleted(this, latencyNanos, error, actualTokens);
+                drain();
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Permit> sink;
+        private final int tokens;
+        private final long enqueuedNanos;
+        // Set once the waiter is granted a permit or gives up
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile Permit permit;
+
+        Waiter(MonoSink<Permit> sink, int tokens, long enqueuedNanos) {
+            this.sink = sink;
+            this.tokens = tokens;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Token bucket refilled continuously at a per-minute rate, holding at most one minute's worth.
+     * It may go negative when actual usage exceeds the estimate, which delays the following calls. Not thread-safe.
+     */
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double perNano;
+        private double available;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(int perMinute) {
+            this.capacity = perMinute;
+            this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+        }
+
+        long nanosUntil(int amount, long now) {
+            refill(now);
+            double needed = Math.min(amount, capacity) - available;
+            return needed <= 0 ? 0 : (long) Math.ceil(needed / perNano);
+        }
+
+        void take(int amount, long now) {
+            refill(now);
+            available = Math.min(capacity, available - Math.min(amount, capacity));
+        }
+
+        private void refill(long now) {
+            available = Math.min(capacity, available + (now - lastRefillNanos) * perNano);
+            lastRefillNanos = now;
+        }
+    }
+}
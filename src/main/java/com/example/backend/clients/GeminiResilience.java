@@ -0,0 +1,316 @@
+package com.example.backend.clients;
+
+import com.example.backend.utils.DeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retries and hedging for Gemini calls.
+ * Failures that are likely to be transient (429, 5xx, timeouts, connection errors) are retried with exponential
+ * backoff and full jitter, waiting at least as long as a Retry-After header asks for. Other failures, e.g. a 400 for
+ * a malformed request, a {@link RateLimitExceededException} from the local limiter or a
+ * {@link DeadlineExceededException} once the request is out of time, fail right away.
+ * Optionally, a non-streamed call that has not answered within the observed p95 latency gets a second, hedged
+ * request; the first answer wins and the other request is cancelled. Hedges are capped to a share of all calls,
+ * so slow periods do not double the load on Gemini.
+ */
+@Component
+public class GeminiResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiResilience.class);
+
+    private final int maxRetries;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration maxRetryAfter;
+    private final boolean hedgeEnabled;
+    private final Duration minHedgeDelay;
+    private final double maxHedgeRatio;
+
+    private final LatencyTracker latencies = new LatencyTracker(256);
+    private final MeterRegistry meterRegistry;
+    private final Counter calls;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+
+    public GeminiResilience(MeterRegistry meterRegistry,
+                            @Value("${gemini.retry.max-retries:3}") int maxRetries,
+                            @Value("${gemini.retry.initial-backoff:500ms}") Duration initialBackoff,
+                            @Value("${gemini.retry.max-backoff:8s}") Duration maxBackoff,
+                            @Value("${gemini.retry.max-retry-after:30s}") Duration maxRetryAfter,
+                            @Value("${gemini.hedge.enabled:false}") boolean hedgeEnabled,
+                            @Value("${gemini.hedge.min-delay:500ms}") Duration minHedgeDelay,
+                            @Value("${gemini.hedge.max-ratio:0.1}") double maxHedgeRatio) {
+        this.meterRegistry = meterRegistry;
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxRetryAfter = maxRetryAfter;
+        this.hedgeEnabled = hedgeEnabled;
+        this.minHedgeDelay = minHedgeDelay;
+        this.maxHedgeRatio = maxHedgeRatio;
+
+        this.calls = meterRegistry.counter("gemini.calls");
+        this.hedges = meterRegistry.counter("gemini.hedges", "result", "sent");
+        this.hedgeWins = meterRegistry.counter("gemini.hedges", "result", "won");
+        Gauge.builder("gemini.latency.p95", latencies, tracker -> tracker.p95Nanos() / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a non-streamed call with retries and, if enabled, hedging.
+     *
+     * @param attempt Starts one attempt of the call; invoked again for every retry and hedge
+     * @return The result of the first successful attempt
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> attempt) {
+        return Mono.defer(() -> {
+                    calls.increment();
+                    return hedged(() -> timed(attempt.get()));
+                })
+                .retryWhen(retrySpec(() -> true));
+    }
+
+    /**
+     * Runs a streamed call with retries. A stream is only retried while it has not emitted anything,
+     * since the subscriber would otherwise receive the same chunks twice.
+     *
+     * @param attempt Starts one attempt of the call; invoked again for every retry
+     * @return The emitted elements of the successful attempt
+     */
+    public <T> Flux<T> executeStream(Supplier<Flux<T>> attempt) {
+        return Flux.defer(() -> {
+            AtomicBoolean emitted = new AtomicBoolean();
+            return Flux.defer(attempt)
+                    .doOnNext(element -> emitted.set(true))
+                    .retryWhen(retrySpec(() -> !emitted.get()));
+        });
+    }
+
+    private Retry retrySpec(BooleanSupplier retryAllowed) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            String cause = retryCause(failure);
+            if (cause == null || signal.totalRetries() >= maxRetries || !retryAllowed.getAsBoolean()) {
+                return Mono.error(failure);
+            }
+
+            Duration delay = backoff(signal.totalRetries());
+            Duration retryAfter = retryAfter(failure);
+            if (retryAfter != null) {
+                if (retryAfter.compareTo(maxRetryAfter) > 0) {
+                    // Gemini asks for a longer pause than a caller should wait
+                    return Mono.error(failure);
+                }
+                delay = retryAfter.compareTo(delay) > 0 ? retryAfter : delay;
+            }
+
+            meterRegistry.counter("gemini.retries", "cause", cause).increment();
+            logger.warn("⚠️ Gemini call failed ({}), retrying in {} ms: {}", cause, delay.toMillis(), failure.getMessage());
+            return Mono.delay(delay);
+        }));
+    }
+
+    /**
+     * @return A short name for a transient failure, or null if the failure should not be retried
+     */
+    private static String retryCause(Throwable failure) {
+        if (failure instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            if (status == 429) {
+                return "throttled";
+            }
+            return status >= 500 ? "server-error" : null;
+        }
+        if (failure instanceof TimeoutException || failure instanceof ReadTimeoutException
+                || failure instanceof ConnectTimeoutException) {
+            return "timeout";
+        }
+        if (failure instanceof WebClientRequestException) {
+            return "connection";
+        }
+        return null;
+    }
+
+    /**
+     * Exponential backoff with full jitter: a random delay between zero and the capped exponential delay.
+     */
+    private Duration backoff(long retry) {
+        long cap = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(retry, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    /**
+     * Reads the Retry-After header of a failed response, given either in seconds or as an HTTP date.
+     *
+     * @return The requested pause, or null if there is none
+     */
+    private static Duration retryAfter(Throwable failure) {
+        if (!(failure instanceof WebClientResponseException response)) {
+            return null;
+        }
+        String value = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                Duration untilDate = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return untilDate.isNegative() ? Duration.ZERO : untilDate;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.doOnSuccess(value -> latencies.record(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Starts the call and, if it has not finished within the hedge delay, a second one. The first value wins and
+     * cancels the other attempt; the call only fails once every started attempt has failed.
+     * Both attempts run with the subscriber's context.
+     */
+    private <T> Mono<T> hedged(Supplier<Mono<T>> attempt) {
+        Duration delay = hedgeDelay();
+        if (delay == null) {
+            return attempt.get();
+        }
+
+        return Mono.create(sink -> {
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger running = new AtomicInteger(1);
+            Disposable.Composite subscriptions = Disposables.composite();
+            sink.onDispose(subscriptions);
+
+            // Subscribed here rather than by the caller, so pass on its context: the deadline, trace and stage tags
+            subscriptions.add(attempt.get().contextWrite(sink.contextView()).subscribe(
+                    value -> {
+                        if (done.compareAndSet(false, true)) {
+                            sink.success(value);
+                        }
+                    },
+                    error -> {
+                        if (running.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                            sink.error(error);
+                        }
+                    },
+                    () -> {
+                        if (done.compareAndSet(false, true)) {
+                            sink.success();
+                        }
+                    }));
+
+            subscriptions.add(Mono.delay(delay).subscribe(tick -> {
+                // Only hedge while the first attempt is still running
+                if (done.get() || running.incrementAndGet() == 1) {
+                    return;
+                }
+                hedges.increment();
+                subscriptions.add(attempt.get().contextWrite(sink.contextView()).subscribe(
+                        value -> {
+                            if (done.compareAndSet(false, true)) {
+                                hedgeWins.increment();
+                                sink.success(value);
+                            }
+                        },
+                        error -> {
+                            if (running.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                                sink.error(error);
+                            }
+                        },
+                        () -> {
+                            if (done.compareAndSet(false, true)) {
+                                sink.success();
+                            }
+                        }));
+            }));
+        });
+    }
+
+    /**
+     * @return The observed p95 latency, or null if hedging is disabled, there are too few samples
+     *         or the hedge budget is used up
+     */
+    private Duration hedgeDelay() {
+        if (!hedgeEnabled || hedges.count() >= calls.count() * maxHedgeRatio) {
+            return null;
+        }
+        long p95 = latencies.p95Nanos();
+        if (p95 == 0) {
+            return null;
+        }
+        Duration delay = Duration.ofNanos(p95);
+        return delay.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : delay;
+    }
+
+    /**
+     * Keeps the latencies of the latest successful calls and derives their p95, recomputed every few samples.
+     */
+    private static final class LatencyTracker {
+
+        private static final int MIN_SAMPLES = 50;
+        private static final int RECOMPUTE_EVERY = 16;
+
+        private final long[] samples;
+        private int count;
+        private int next;
+        private volatile long p95Nanos;
+
+        LatencyTracker(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count >= MIN_SAMPLES && next % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95Nanos = sorted[(int) Math.ceil(count * 0.95) - 1];
+            }
+        }
+
+        /**
+         * @return The p95 latency in nanoseconds, or 0 until enough calls have been measured
+         */
+        long p95Nanos() {
+            return p95Nanos;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.backend.clients;
+
+import com.example.backend.utils.Deadline;
+import com.example.backend.utils.FeedPage;
+import com.example.backend.utils.FeedPageParser;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP client for the Facebook Graph API endpoints used by FacebookService.
+ * All calls run inside the Graph API {@link DependencyGuard} and are limited to the remaining request {@link Deadline}.
+ */
+@Component
+public class GraphApiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphApiClient.class);
+
+    private static final String FEED_FIELDS = "message,created_time";
+
+    private final WebClient webClient;
+    private final DependencyGuard guard;
+    private final Gson gson = new Gson();
+
+    @Value("${facebook.graph.version:v22.0}")
+    private String version;
+
+    @Value("${outbound.http.total-timeout:60s}")
+    private Duration totalTimeout;
+
+    @Value("${facebook.graph.base-url:https://graph.facebook.com}")
+    private String baseUrl;
+
+    public GraphApiClient(@Qualifier("graphWebClient") WebClient webClient, @Qualifier("graphGuard") DependencyGuard guard) {
+        this.webClient = webClient;
+        this.guard = guard;
+    }
+
+    /**
+     * Reads the latest posts of a page, newest first, following paging.next page by page.
+     * Only the message and created_time fields are requested, and posts without a message are left out.
+     * The next page is only requested once the posts of the current one have been consumed and fewer than
+     * maxPosts posts, with or without a message, were seen; a page whose posts all lack a message does not stop
+     * the paging. Cancelling or limiting the Flux stops it as well.
+     *
+     * @param pageSize The number of posts requested per page
+     * @param maxPosts The maximum number of posts to read
+     * @param since    Only read posts created at or after this time, or null to read the latest posts
+     * @return The posts that have a message
+     */
+    public Flux<FeedPage.Post> getFeedPosts(String pageId, String pageAccessToken, int pageSize, int maxPosts, Instant since) {
+        return Flux.defer(() -> {
+            AtomicInteger seen = new AtomicInteger();
+            return getFirstFeedPage(pageId, pageAccessToken, Math.min(pageSize, maxPosts), since)
+                    .expand(page -> page.next() == null || seen.addAndGet(page.postCount()) >= maxPosts
+                            ? Mono.empty()
+                            : getNextFeedPage(page.next()))
+                    .concatMapIterable(FeedPage::posts, 1)
+                    .take(maxPosts);
+        });
+    }
+
+    private Mono<FeedPage> getFirstFeedPage(String pageId, String pageAccessToken, int limit, Instant since) {
+        return getFeedPage(webClient.get()
+                .uri(uri -> uri.path("/{version}/{pageId}/feed")
+                        .queryParam("fields", FEED_FIELDS)
+                        .queryParam("limit", limit)
+                        .queryParamIfPresent("since", Optional.ofNullable(since).map(Instant::getEpochSecond))
+                        .queryParam("access_token", pageAccessToken)
+                        .build(version, pageId)));
+    }
+
+    /**
+     * Requests the page behind a paging.next URL, which already carries the fields, limit, cursor and access token.
+     * URLs pointing anywhere but the configured Graph API host are not followed, so the token is never sent elsewhere.
+     */
+    private Mono<FeedPage> getNextFeedPage(String next) {
+        if (next == null) {
+            return Mono.empty();
+        }
+        URI uri = URI.create(next);
+        URI graph = URI.create(baseUrl);
+        if (!graph.getHost().equalsIgnoreCase(uri.getHost()) || graph.getPort() != uri.getPort()
+                || !graph.getScheme().equalsIgnoreCase(uri.getScheme())) {
+            logger.warn("Not following feed paging link to {}://{}", uri.getScheme(), uri.getHost());
+            return Mono.empty();
+        }
+        return getFeedPage(webClient.get().uri(uri));
+    }
+
+    private Mono<FeedPage> getFeedPage(WebClient.RequestHeadersSpec<?> request) {
+        return guard.protect(Deadline.bound(request
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .as(DataBufferUtils::join)
+                .map(GraphApiClient::parseFeedPage), totalTimeout));
+    }
+
+    private static FeedPage parseFeedPage(DataBuffer buffer) {
+        try (Reader reader = new InputStreamReader(buffer.asInputStream(true), StandardCharsets.UTF_8)) {
+            return FeedPageParser.parse(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read Graph API feed page", e);
+        }
+    }
+
+    /**
+     * Publishes a text post to the feed of a page.
+     *
+     * @param postData The post fields, including "message" and "access_token"
+     * @return The raw JSON response body
+     */
+    public Mono<String> publishPost(String pageId, Map<String, ?> postData) {
+        return post("/{version}/{pageId}/feed", pageId, postData);
+    }
+
+    /**
+     * Publishes a photo, given by URL, to a page.
+     *
+     * @param postData The photo fields, including "url", "message" and "access_token"
+     * @return The raw JSON response body
+     */
+    public Mono<String> publishPhoto(String pageId, Map<String, ?> postData) {
+        return post("/{version}/{pageId}/photos", pageId, postData);
+    }
+
+    private Mono<String> post(String path, String pageId, Map<String, ?> body) {
+        return guard.protect(Deadline.bound(webClient.post()
+                .uri(path, version, pageId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(gson.toJson(body))
+                .retrieve()
+                .bodyToMono(String.class), totalTimeout));
+    }
+}
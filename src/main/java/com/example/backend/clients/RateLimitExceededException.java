@@ -0,0 +1,15 @@
+package com.example.backend.clients;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a call to an external API cannot be started because the client-side rate limit
+ * stays exhausted for longer than the caller may wait. Like any rejected call, it is not attempted,
+ * so callers handle it as a {@link DependencyUnavailableException}.
+ */
+public class RateLimitExceededException extends DependencyUnavailableException {
+
+    public RateLimitExceededException(String dependency, String reason, Duration retryAfter) {
+        super(dependency, reason, retryAfter);
+    }
+}
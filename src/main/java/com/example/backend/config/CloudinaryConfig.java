@@ -3,23 +3,34 @@ package com.example.backend.config;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.Map;
 
+/**
+ * Cloudinary client. Credentials come from the .env file, falling back to the cloudinary.* properties.
+ * cloudinary.upload-prefix points uploads at another host, e.g. the stub used by the load tests.
+ */
 @Configuration
 public class CloudinaryConfig {
 
     @Bean
-    public Cloudinary cloudinary() {
-        Dotenv dotenv = Dotenv.load();
+    public Cloudinary cloudinary(@Value("${cloudinary.cloud_name:}") String cloudName,
+                                 @Value("${cloudinary.api_key:}") String apiKey,
+                                 @Value("${cloudinary.api_secret:}") String apiSecret,
+                                 @Value("${cloudinary.upload-prefix:}") String uploadPrefix) {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
 
         Map<String, String> config = ObjectUtils.asMap(
-                "cloud_name", dotenv.get("CLOUDINARY_CLOUD_NAME"),
-                "api_key", dotenv.get("CLOUDINARY_API_KEY"),
-                "api_secret", dotenv.get("CLOUDINARY_API_SECRET")
+                "cloud_name", dotenv.get("CLOUDINARY_CLOUD_NAME", cloudName),
+                "api_key", dotenv.get("CLOUDINARY_API_KEY", apiKey),
+                "api_secret", dotenv.get("CLOUDINARY_API_SECRET", apiSecret)
         );
+        if (!uploadPrefix.isBlank()) {
+            config.put("upload_prefix", uploadPrefix);
+        }
 
         return new Cloudinary(config);
     }
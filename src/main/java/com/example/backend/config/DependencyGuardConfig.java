@@ -0,0 +1,49 @@
+package com.example.backend.config;
+
+import com.example.backend.clients.DependencyGuard;
+import com.example.backend.utils.DeadlineExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One {@link DependencyGuard} (bulkhead and circuit breaker) per external dependency,
+ * configured with the dependency.gemini.*, dependency.graph.* and dependency.cloudinary.* properties.
+ */
+@Configuration
+public class DependencyGuardConfig {
+
+    @Bean
+    public DependencyGuard geminiGuard(Environment environment, MeterRegistry meterRegistry) {
+        return new DependencyGuard("gemini", DependencyGuardConfig::isHttpDependencyFailure, environment, meterRegistry);
+    }
+
+    @Bean
+    public DependencyGuard graphGuard(Environment environment, MeterRegistry meterRegistry) {
+        return new DependencyGuard("graph", DependencyGuardConfig::isHttpDependencyFailure, environment, meterRegistry);
+    }
+
+    @Bean
+    public DependencyGuard cloudinaryGuard(Environment environment, MeterRegistry meterRegistry) {
+        // The Cloudinary SDK reports every failure as a plain exception, so all of them count,
+        // except running out of the request's own time
+        return new DependencyGuard("cloudinary", error -> !(error instanceof DeadlineExceededException), environment, meterRegistry);
+    }
+
+    /**
+     * Server errors, throttling, timeouts and connection failures point at an unhealthy upstream;
+     * other 4xx responses are caused by the request and show the upstream is alive. A {@link DeadlineExceededException}
+     * is no failure: the request ran out of time, however fast the upstream answered.
+     */
+    private static boolean isHttpDependencyFailure(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return error instanceof TimeoutException || error instanceof WebClientRequestException;
+    }
+}
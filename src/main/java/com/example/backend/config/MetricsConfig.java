@@ -0,0 +1,69 @@
+package com.example.backend.config;
+
+import com.example.backend.services.ConversationStore;
+import com.example.backend.utils.ConversationWindow;
+import com.example.backend.utils.DropCountingAsyncAppender;
+import com.example.backend.utils.IntentClassifier;
+import com.example.backend.utils.StreamingMetrics;
+import com.example.backend.utils.VirtualThreadPinningMonitor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes the counters that the chat components keep in memory as Micrometer meters,
+ * so they show up under /actuator/metrics and /actuator/prometheus next to the chat.pipeline and chat.stage timers.
+ * Outbound WebClient calls are timed by Spring Boot as http.client.requests, tagged with client name, uri and status.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder chatComponentMetrics(IntentClassifier intentClassifier, StreamingMetrics streamingMetrics,
+                                            ConversationWindow conversationWindow, ConversationStore conversationStore) {
+        return registry -> {
+            FunctionCounter.builder("chat.intent.classified", intentClassifier, IntentClassifier::getClassifiedCount).register(registry);
+            FunctionCounter.builder("chat.intent.local.hits", intentClassifier, IntentClassifier::getLocalHitCount).register(registry);
+            FunctionCounter.builder("chat.intent.llm.fallbacks", intentClassifier, IntentClassifier::getLlmFallbackCount).register(registry);
+            FunctionCounter.builder("chat.intent.llm.agreements", intentClassifier, IntentClassifier::getAgreementCount)
+                    .description("Gemini classifications that matched the local classifier's guess")
+                    .register(registry);
+            FunctionCounter.builder("chat.intent.llm.disagreements", intentClassifier, IntentClassifier::getDisagreementCount)
+                    .description("Gemini classifications that differed from the local classifier's guess")
+                    .register(registry);
+
+            FunctionCounter.builder("chat.stream.started", streamingMetrics, StreamingMetrics::getStreamCount).register(registry);
+            FunctionCounter.builder("chat.stream.completed", streamingMetrics, StreamingMetrics::getCompletedCount).register(registry);
+            FunctionCounter.builder("chat.stream.cancelled", streamingMetrics, StreamingMetrics::getCancelledCount).register(registry);
+            FunctionCounter.builder("chat.stream.failed", streamingMetrics, StreamingMetrics::getFailedCount).register(registry);
+
+            FunctionCounter.builder("chat.window.windowed", conversationWindow, ConversationWindow::getWindowedCount).register(registry);
+            FunctionCounter.builder("chat.window.summary.cache.hits", conversationWindow, ConversationWindow::getSummaryCacheHitCount).register(registry);
+            FunctionCounter.builder("chat.window.summary.calls", conversationWindow, ConversationWindow::getSummaryCallCount).register(registry);
+
+            Gauge.builder("chat.conversation.cached", conversationStore, ConversationStore::getCachedConversationCount).register(registry);
+            FunctionCounter.builder("chat.conversation.hits", conversationStore, ConversationStore::getHitCount).register(registry);
+            FunctionCounter.builder("chat.conversation.loads", conversationStore, ConversationStore::getLoadCount).register(registry);
+            FunctionCounter.builder("chat.conversation.spills", conversationStore, ConversationStore::getSpillCount).register(registry);
+
+            FunctionCounter.builder("logging.events.dropped", DropCountingAsyncAppender.class, type -> DropCountingAsyncAppender.getDroppedCount())
+                    .description("Log events dropped because the async logging queue was full")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Virtual thread pinning events seen by the {@link VirtualThreadPinningMonitor}, which only exists when
+     * virtual threads are enabled.
+     */
+    @Bean
+    public MeterBinder virtualThreadPinningMetrics(ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor) {
+        return registry -> pinningMonitor.ifAvailable(monitor ->
+                FunctionCounter.builder("jvm.virtual.pinned", monitor, VirtualThreadPinningMonitor::getPinnedEventCount)
+                        .description("Virtual threads pinned to their carrier thread for longer than virtual-threads.pinning.threshold")
+                        .register(registry));
+    }
+}
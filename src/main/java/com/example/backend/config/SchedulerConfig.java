@@ -1,15 +1,32 @@
 package com.example.backend.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
 
 @Configuration
 public class SchedulerConfig {
 
     @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
     public TaskScheduler taskScheduler() {
         return new ConcurrentTaskScheduler();
     }
+
+    /**
+     * With spring.threads.virtual.enabled on Java 21, every scheduled post runs on its own virtual thread,
+     * so posts that block on Gemini or the Graph API do not hold on to scheduler threads.
+     */
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public TaskScheduler virtualThreadTaskScheduler() {
+        SimpleAsyncTaskScheduler scheduler = new SimpleAsyncTaskScheduler();
+        scheduler.setVirtualThreads(true);
+        scheduler.setThreadNamePrefix("scheduled-post-");
+        return scheduler;
+    }
 }
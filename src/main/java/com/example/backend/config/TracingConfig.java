@@ -0,0 +1,23 @@
+package com.example.backend.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Span export. Spring Boot sends spans to every SpanExporter bean: the OTLP exporter is auto-configured once
+ * management.otlp.tracing.endpoint is set, and with tracing.export.logging.enabled this adds an exporter writing
+ * finished spans to the log, so traces can be followed without a collector. It logs every sampled span at INFO,
+ * so it is meant for local debugging and off by default.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.export.logging.enabled", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.backend.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Non-blocking WebClients for the external APIs. Outbound calls run on the shared Reactor Netty event loop,
+ * so a request waiting on Gemini or the Graph API does not hold a thread.
+ * All clients share one connection pool with keep-alive, per-host connection limits and connect/read timeouts
+ * (the total timeout per call is applied by the clients, since it does not apply to streamed responses),
+ * and negotiate HTTP/2 where the upstream supports it. The pool publishes its leased (active), idle, pending
+ * and total connection counts as reactor.netty.connection.provider.* metrics.
+ */
+@Configuration
+public class WebClientConfig {
+
+    @Value("${gemini.api.base-url:https://generativelanguage.googleapis.com}")
+    private String geminiBaseUrl;
+
+    @Value("${facebook.graph.base-url:https://graph.facebook.com}")
+    private String graphBaseUrl;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider outboundConnectionProvider(
+            @Value("${outbound.http.pool.max-connections:200}") int maxConnections,
+            @Value("${outbound.http.pool.max-pending:500}") int maxPending,
+            @Value("${outbound.http.pool.pending-timeout:5s}") Duration pendingTimeout,
+            @Value("${outbound.http.pool.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${outbound.http.pool.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${outbound.http.pool.gemini.max-connections:50}") int geminiMaxConnections,
+            @Value("${outbound.http.pool.graph.max-connections:20}") int graphMaxConnections) {
+        return ConnectionProvider.builder("outbound")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPending)
+                .pendingAcquireTimeout(pendingTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(Duration.ofSeconds(30))
+                .forRemoteHost(remoteAddress(geminiBaseUrl), spec -> spec.maxConnections(geminiMaxConnections))
+                .forRemoteHost(remoteAddress(graphBaseUrl), spec -> spec.maxConnections(graphMaxConnections))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public ClientHttpConnector outboundHttpConnector(
+            ConnectionProvider outboundConnectionProvider,
+            @Value("${outbound.http.connect-timeout:3s}") Duration connectTimeout,
+            @Value("${outbound.http.read-timeout:30s}") Duration readTimeout,
+            @Value("${outbound.http.http2-enabled:true}") boolean http2Enabled) {
+        HttpClient httpClient = HttpClient.create(outboundConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                // Maximum time between two reads while a response is being received
+                .responseTimeout(readTimeout);
+
+        if (http2Enabled) {
+            // HTTP/2 is negotiated via ALPN on TLS connections, HTTP/1.1 is used otherwise
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    @Bean
+    public WebClient geminiWebClient(WebClient.Builder builder, ClientHttpConnector outboundHttpConnector,
+                                     @Value("${geminiai.api.key}") String apiKey) {
+        return builder.clone()
+                .clientConnector(outboundHttpConnector)
+                .baseUrl(geminiBaseUrl)
+                .defaultHeader("x-goog-api-key", apiKey)
+                .build();
+    }
+
+    @Bean
+    public WebClient graphWebClient(WebClient.Builder builder, ClientHttpConnector outboundHttpConnector) {
+        return builder.clone()
+                .clientConnector(outboundHttpConnector)
+                .baseUrl(graphBaseUrl)
+                .defaultHeader(HttpHeaders.ACCEPT, "application/json")
+                .build();
+    }
+
+    private static InetSocketAddress remoteAddress(String baseUrl) {
+        URI uri = URI.create(baseUrl);
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        return InetSocketAddress.createUnresolved(uri.getHost(), port);
+    }
+}
@@ -1,19 +1,35 @@
 package com.example.backend.controllers;
 
+import com.example.backend.clients.DependencyUnavailableException;
 import com.example.backend.entity.PageData;
+import com.example.backend.services.ConversationStore;
 import com.example.backend.services.FacebookService;
 import com.example.backend.services.CloudinaryService;
+import com.example.backend.utils.ChatClassification;
+import com.example.backend.utils.ChatIntent;
+import com.example.backend.utils.Deadline;
+import com.example.backend.utils.DeadlineExceededException;
 import com.example.backend.utils.GeminiAiService;
+import com.example.backend.utils.StageMetrics;
+import com.example.backend.utils.TraceSpans;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -22,7 +38,6 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,9 +49,16 @@ import jakarta.servlet.http.Cookie;
  * and Facebook-related operations.
  * It provides the following functionalities:
  * - Handling chat requests and generating responses.
+ * - Streaming chat replies as server-sent events.
  * - Managing image uploads and posting them to Facebook.
  * - Posting text content to Facebook.
  * - Uploading photos to Facebook from a provided URL.
+ * While Gemini, the Graph API or Cloudinary is unavailable (open circuit or full bulkhead), requests that need it
+ * fail fast with a 503 response naming the dependency and a Retry-After header.
+ * Every request gets a deadline (chat.deadline.*) that bounds all the outbound calls it makes;
+ * once it passes, the remaining work is cancelled and the request fails with a 504 response.
+ * Each endpoint and its stages are timed with {@link StageMetrics} as the chat.pipeline and chat.stage metrics,
+ * and traced as spans with {@link TraceSpans}; scheduled posts link back to the request that scheduled them.
  */
 @RestController
 @RequestMapping("/chat")
@@ -48,100 +70,232 @@ public class MainController {
     private final FacebookService facebookService;
     private final GeminiAiService geminiAiService;
     private final CloudinaryService cloudinaryService;
+    private final ConversationStore conversationStore;
+    private final StageMetrics stageMetrics;
+    private final TraceSpans traceSpans;
 
     @Autowired
     private TaskScheduler taskScheduler;
 
-    public MainController(FacebookService facebookService, GeminiAiService geminiAiService, CloudinaryService cloudinaryService) {
+    @Value("${chat.stream.timeout:120s}")
+    private Duration streamTimeout;
+
+    @Value("${chat.deadline.chat:${chat.deadline.default:60s}}")
+    private Duration chatDeadline;
+
+    @Value("${chat.deadline.stream:${chat.deadline.default:60s}}")
+    private Duration streamDeadline;
+
+    @Value("${chat.deadline.upload:${chat.deadline.default:60s}}")
+    private Duration uploadDeadline;
+
+    public MainController(FacebookService facebookService, GeminiAiService geminiAiService, CloudinaryService cloudinaryService,
+                          ConversationStore conversationStore, StageMetrics stageMetrics, TraceSpans traceSpans) {
         this.facebookService = facebookService;
         this.geminiAiService = geminiAiService;
         this.cloudinaryService = cloudinaryService;
+        this.conversationStore = conversationStore;
+        this.stageMetrics = stageMetrics;
+        this.traceSpans = traceSpans;
     }
 
     /**
      * Handles incoming chat requests, processes user messages, and returns appropriate responses.
-     * Executes various actions based on user intent, such as posting or scheduling posts,
-     * and generates AI-driven replies.
+     * The user intent and the AI-driven reply are obtained from a single Gemini classification call,
+     * and the request then branches on the intent: scheduling a post, posting right away, or replying.
+     * The response is produced asynchronously, so no servlet thread waits on Gemini or the Graph API.
      *
-     * @param payload A map containing request body data, including the list of user messages.
+     * @param payload A map containing request body data: either only the new user "message" (and optionally a
+     *                "conversationId"), continuing the conversation stored on the server, or the full list of "messages".
      * @param request The HTTP servlet request object, used for accessing session information.
-     * @return A ResponseEntity containing a map with the response data, including generated replies,
+     * @return A Mono of a ResponseEntity containing a map with the response data, including generated replies,
      *         or error messages if the processing fails.
      */
     @PostMapping("")
-    public ResponseEntity<Map<String, Object>> handleChatRequest(@RequestBody Map<String, Object> payload, HttpServletRequest request) {
-        try {
-
-            HttpSession session = request.getSession(false);
-            System.out.println("🔍 POST - Session object: " + session);
-
-            Object messagesObj = payload.get("messages");
+    public Mono<ResponseEntity<Map<String, Object>>> handleChatRequest(@RequestBody Map<String, Object> payload, HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        logger.debug("🔍 POST - Session present: {}", session != null);
 
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> messages = (List<Map<String, Object>>) messagesObj;
+        String conversationKey = session == null ? null : storedConversationKey(payload, session);
+        List<Map<String, Object>> messages = session == null ? null : resolveMessages(payload, conversationKey);
+        String userText = messages == null ? null : extractLastUserMessage(messages);
 
-            String userText = extractLastUserMessage(messages);
+        if (userText == null || session == null) {
+            logger.warn("No valid user message found in the request");
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "No valid user message found")));
+        }
 
-            AtomicReference<String> dateRef = new AtomicReference<>();
+        // Classify the message locally or with a single Gemini call, together with the reply; the stage times both,
+        // as they share that call
+        Mono<ResponseEntity<Map<String, Object>>> response = stageMetrics.stage("classify-and-reply", "gemini",
+                        geminiAiService.classifyAndRespond(messages, userText))
+                .flatMap(classification -> respondToIntent(classification, messages, session))
+                .flatMap(entity -> {
+                    if (conversationKey != null && entity.getBody() != null && entity.getBody().get("reply") instanceof String reply) {
+                        return recordExchange(conversationKey, userText, reply).thenReturn(entity);
+                    }
+                    return Mono.just(entity);
+                });
+
+        return stageMetrics.pipeline("chat", traceSpans.span("MainController.handleChatRequest", Deadline.enforce(response, chatDeadline))
+                .onErrorResume(DependencyUnavailableException.class, e -> Mono.just(dependencyUnavailable(e)))
+                .onErrorResume(DeadlineExceededException.class, e -> Mono.just(deadlineExceeded(e)))
+                .onErrorResume(e -> {
+                    logger.error("Error processing chat request", e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.<String, Object>of("error", "Something went wrong!")));
+                }));
+    }
 
-            if (userText == null || !(messagesObj instanceof List<?>) || session == null) {
-                logger.warn("No valid user message found in the request");
-                return ResponseEntity.badRequest().body(Map.of("error", "No valid user message found"));
-            }
+    /**
+     * Builds the fail-fast response for a request that needs a dependency which is currently unavailable.
+     */
+    private static ResponseEntity<Map<String, Object>> dependencyUnavailable(DependencyUnavailableException e) {
+        logger.warn("Failing fast: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(Map.<String, Object>of("error", unavailableMessage(e), "dependency", e.getDependency()));
+    }
 
-            // Check if the user wants to schedule a post to Facebook
-            if (geminiAiService.isScheduledPostIntent(userText, dateRef)) {
-                String dateString = dateRef.get();
-                try {
+    /**
+     * Builds the response for a request whose deadline passed before it was answered.
+     */
+    private static ResponseEntity<Map<String, Object>> deadlineExceeded(DeadlineExceededException e) {
+        logger.warn("Abandoning request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(Map.<String, Object>of("error", "The request took too long, please try again."));
+    }
 
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-                    LocalDateTime scheduledDateTime = LocalDateTime.parse(dateString, formatter);
-                    LocalDateTime now = LocalDateTime.now();
+    private static String unavailableMessage(DependencyUnavailableException e) {
+        String service = switch (e.getDependency()) {
+            case "gemini" -> "The AI service";
+            case "graph" -> "Facebook";
+            case "cloudinary" -> "The image service";
+            default -> e.getDependency();
+        };
+        return service + " is temporarily unavailable, please try again shortly.";
+    }
 
-                    if (scheduledDateTime.isBefore(now)) {
-                        return ResponseEntity.ok(Map.of("reply", "Cannot schedule a post in the past. Please choose a future time."));
-                    }
+    private Mono<ResponseEntity<Map<String, Object>>> respondToIntent(ChatClassification classification,
+                                                                     List<Map<String, Object>> messages, HttpSession session) {
+        // Check if the user wants to schedule a post to Facebook
+        if (classification.intent() == ChatIntent.SCHEDULED_POST && classification.scheduledTime() != null) {
+            String dateString = classification.scheduledTime();
+            try {
 
-                    Runnable task = () -> {
-                        System.out.println("🕒 Scheduled post triggered at: " + LocalDateTime.now());
-                        facebookService.postToFacebook(session);
-                    };
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+                LocalDateTime scheduledDateTime = LocalDateTime.parse(dateString, formatter);
+                LocalDateTime now = LocalDateTime.now();
 
-                    Date executionTime = Date.from(scheduledDateTime.atZone(ZoneId.systemDefault()).toInstant());
+                if (scheduledDateTime.isBefore(now)) {
+                    return Mono.just(ResponseEntity.ok(Map.of("reply", "Cannot schedule a post in the past. Please choose a future time.")));
+                }
 
-                    taskScheduler.schedule(task, executionTime);
+                Runnable task = () -> {
+                    logger.info("🕒 Scheduled post triggered at: {}", LocalDateTime.now());
+                    facebookService.postToFacebook(session);
+                };
 
-                    System.out.println("✅ Post scheduled for: " + scheduledDateTime);
+                Date executionTime = Date.from(scheduledDateTime.atZone(ZoneId.systemDefault()).toInstant());
 
-                    return ResponseEntity.ok(Map.of("reply", "Post scheduled for: " + scheduledDateTime));
+                return traceSpans.linkedTask("scheduled-post", task)
+                        .map(linkedTask -> {
+                            taskScheduler.schedule(linkedTask, executionTime);
+                            logger.info("✅ Post scheduled for: {}", scheduledDateTime);
+                            return ResponseEntity.ok(Map.<String, Object>of("reply", "Post scheduled for: " + scheduledDateTime));
+                        });
 
-                } catch (DateTimeParseException e) {
-                    System.err.println("⚠️ תאריך לא תקין: " + dateString);
-                }
-            }
-            // Check if the user wants to post to Facebook
-             else if (geminiAiService.isPostIntent(userText)) {
-                logger.debug("Post intent detected, attempting to post to Facebook");
-                Map<String, Object> fbResponse = facebookService.postToFacebook(session);
-
-                if (Boolean.TRUE.equals(fbResponse.get("success"))) {
-                    logger.info("Successfully posted to Facebook");
-                    return ResponseEntity.ok(Map.of("reply", "Post uploaded successfully! Message: " + fbResponse.get("message")));
-                } else {
-                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                            .body(Map.of("reply", "Post upload failed!", "error", fbResponse));
-                }
+            } catch (DateTimeParseException e) {
+                logger.warn("⚠️ תאריך לא תקין: {}", dateString);
             }
+        }
+        // Check if the user wants to post to Facebook
+        else if (classification.intent() == ChatIntent.POST) {
+            logger.debug("Post intent detected, attempting to post to Facebook");
+            return facebookService.postToFacebookAsync(session)
+                    .map(fbResponse -> {
+                        if (Boolean.TRUE.equals(fbResponse.get("success"))) {
+                            logger.info("Successfully posted to Facebook");
+                            return ResponseEntity.ok(Map.<String, Object>of("reply", "Post uploaded successfully! Message: " + fbResponse.get("message")));
+                        } else {
+                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                    .body(Map.<String, Object>of("reply", "Post upload failed!", "error", fbResponse));
+                        }
+                    });
+        }
 
+        // Use the reply from the classification call, or generate one if it came without a reply
+        Mono<String> reply = classification.reply() != null
+                ? Mono.just(classification.reply())
+                : stageMetrics.stage("generation", "gemini", geminiAiService.generateTextAsync(messages));
+        return reply.map(text -> ResponseEntity.ok(Map.<String, Object>of("reply", text)));
+    }
 
-            // Generate text response using Gemini AI
-            String reply = geminiAiService.generateText(messages);
-            return ResponseEntity.ok(Map.of("reply", reply));
+    /**
+     * Streams the AI-generated reply to the latest user message as server-sent events.
+     * Each text chunk from Gemini is sent as a "token" event as soon as it arrives, followed by a final "done" event.
+     * Chunks are requested from Gemini only as fast as they are written to the client, and the upstream call
+     * is cancelled once the client disconnects or no chunk arrives within the stream timeout.
+     *
+     * @param payload A map containing request body data: either only the new user "message" (and optionally a
+     *                "conversationId"), continuing the conversation stored on the server, or the full list of "messages".
+     * @param request The HTTP servlet request object, used for accessing session information.
+     * @return A Flux of server-sent events with the reply, or a single "error" event if the request is invalid.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> handleChatStream(@RequestBody Map<String, Object> payload, HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return Flux.just(sseEvent("error", "No valid user message found"));
+        }
 
-        } catch (Exception e) {
-            logger.error("Error processing chat request", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Something went wrong!"));
+        String conversationKey = storedConversationKey(payload, session);
+        List<Map<String, Object>> messages = resolveMessages(payload, conversationKey);
+        if (messages == null || extractLastUserMessage(messages) == null) {
+            return Flux.just(sseEvent("error", "No valid user message found"));
         }
+
+        String userText = extractLastUserMessage(messages);
+        StringBuilder reply = new StringBuilder();
+        Flux<String> chunks = geminiAiService.streamText(messages)
+                .timeout(streamTimeout)
+                .doOnNext(reply::append)
+                .concatWith(Mono.defer(() -> conversationKey == null ? Mono.<Void>empty()
+                                : recordExchange(conversationKey, userText, reply.toString()))
+                        .then(Mono.<String>empty()));
+
+        return stageMetrics.pipeline("chat-stream", traceSpans.span("MainController.handleChatStream", Deadline.enforce(chunks, streamDeadline)))
+                .map(chunk -> sseEvent("token", chunk))
+                .concatWith(Mono.just(sseEvent("done", "")))
+                .onErrorResume(DependencyUnavailableException.class, e -> {
+                    logger.warn("Failing fast: {}", e.getMessage());
+                    return Flux.just(sseEvent("error", unavailableMessage(e)));
+                })
+                .onErrorResume(DeadlineExceededException.class, e -> {
+                    logger.warn("Abandoning stream: {}", e.getMessage());
+                    return Flux.just(sseEvent("error", "The reply took too long, please try again."));
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error streaming chat reply", e);
+                    return Flux.just(sseEvent("error", "Something went wrong!"));
+                });
+    }
+
+    /**
+     * Stores a user message and its reply in the server-side conversation, off the response thread as it may
+     * read from or write to the database. The reply is sent even if it cannot be stored.
+     */
+    private Mono<Void> recordExchange(String conversationKey, String userText, String reply) {
+        return Mono.fromRunnable(() -> conversationStore.appendExchange(conversationKey, userText, reply))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    logger.warn("⚠️ Could not store conversation {}: {}", conversationKey, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static ServerSentEvent<String> sseEvent(String name, String data) {
+        return ServerSentEvent.builder(data).event(name).build();
     }
 
     /**
@@ -151,26 +305,68 @@ public class MainController {
      * Handles errors by providing appropriate HTTP responses.
      *
      * @param file The uploaded image file. Must be a non-empty {@code MultipartFile}.
-     * @return A ResponseEntity containing a map with the operation result:
+     * @return A Mono of a ResponseEntity containing a map with the operation result:
      *         - On success: A map with the Facebook response details.
      *         - On failure: A map containing error details with appropriate HTTP status codes.
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, Object>> handleUploadImage(@RequestParam("image") MultipartFile file, HttpServletRequest request) {
+    public Mono<ResponseEntity<Map<String, Object>>> handleUploadImage(@RequestParam("image") MultipartFile file, HttpServletRequest request) {
         try {
             if (file.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("error", "No image file uploaded"));
+                return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "No image file uploaded")));
             }
 
-            String imageUrl = cloudinaryService.uploadImage(file);
+            // Read the file now, multipart content is cleaned up once the request completes
+            byte[] image = file.getBytes();
+            HttpSession session = request.getSession(false);
 
-            Map<String, Object> reply = facebookService.uploadPhotoToFacebook(request.getSession(false), imageUrl);
-            return ResponseEntity.ok(Map.of("reply", reply));
+            Mono<ResponseEntity<Map<String, Object>>> response = stageMetrics.stage("cloudinary-upload", "cloudinary",
+                            cloudinaryService.uploadImageAsync(image))
+                    .flatMap(imageUrl -> facebookService.uploadPhotoToFacebookAsync(session, imageUrl))
+                    .map(reply -> ResponseEntity.ok(Map.<String, Object>of("reply", reply)));
+
+            return stageMetrics.pipeline("upload", traceSpans.span("MainController.handleUploadImage", Deadline.enforce(response, uploadDeadline))
+                    .onErrorResume(DependencyUnavailableException.class, e -> Mono.just(dependencyUnavailable(e)))
+                    .onErrorResume(DeadlineExceededException.class, e -> Mono.just(deadlineExceeded(e)))
+                    .onErrorResume(e -> {
+                        logger.error("Error processing chat request", e);
+                        return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.<String, Object>of("error", "Server error")));
+                    }));
 
         } catch (Exception e) {
             logger.error("Error processing chat request", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Server error"));
+            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Server error")));
+        }
+    }
+
+    /**
+     * Returns the key of the server-side conversation a request continues, or null if the client sent the whole
+     * conversation. Conversations are scoped to the session, so a client cannot continue another session's conversation.
+     */
+    private static String storedConversationKey(Map<String, Object> payload, HttpSession session) {
+        if (!(payload.get("message") instanceof String)) {
+            return null;
+        }
+        Object conversationId = payload.get("conversationId");
+        return ConversationStore.key(session.getId(), conversationId instanceof String id && !id.isBlank() ? id : "default");
+    }
+
+    /**
+     * Assembles the conversation to answer: the stored conversation with the new message added,
+     * or the list of messages sent by the client. The new message is only stored once it was answered.
+     *
+     * @return List of messages in Gemini API format, or null if the payload contains no messages
+     */
+    private List<Map<String, Object>> resolveMessages(Map<String, Object> payload, String conversationKey) {
+        if (conversationKey != null) {
+            String message = (String) payload.get("message");
+            return message.isBlank() ? null : conversationStore.withUserMessage(conversationKey, message);
         }
+
+        Object messagesObj = payload.get("messages");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> messages = messagesObj instanceof List<?> ? (List<Map<String, Object>>) messagesObj : null;
+        return messages;
     }
 
     /**
@@ -179,7 +375,7 @@ public class MainController {
      * @param messages List of messages
      * @return The text of the last user message, or null if not found
      */
-    private String extractLastUserMessage(List<Map<String, Object>> messages) {
+    static String extractLastUserMessage(List<Map<String, Object>> messages) {
         for (int i = messages.size() - 1; i >= 0; i--) {
             Map<String, Object> msg = messages.get(i);
             if ("user".equals(msg.get("role"))) {
@@ -213,8 +409,7 @@ public class MainController {
             return (ResponseEntity<?>) Map.of("error", "Session does not contain pageId or pageAccessToken");
         }
 
-        System.out.println("✔️ Saved in session pageId: " + pageId);
-        System.out.println("✔️ Saved in session pageAccessToken : " + pageAccessToken);
+        logger.info("✔️ Saved in session pageId: {}", pageId);
 
         HttpSession session = request.getSession(true);
 
@@ -228,14 +423,14 @@ public class MainController {
         cookie.setMaxAge(60 * 60 * 24 * 30); // חודש
         response.addCookie(cookie);
 
-        System.out.println("✔️ Saved session with ID: " + session.getId());
+        logger.debug("✔️ Saved session");
 
         return ResponseEntity.ok("Session created and cookie sent");
     }
 
     /**
      * Checks the current user's session to validate its existence and required attributes.
-     * Logs session-related details such as cookies, session ID, user-agent, and origin for debugging purposes.
+     * Logs the cookie names, user-agent, and origin at debug level; session ids and cookie values are not logged.
      * If the session does not exist or is missing required attributes, an unauthorized response is returned.
      *
      * @param request the HttpServletRequest containing session and user information
@@ -245,13 +440,14 @@ public class MainController {
     @GetMapping("/facebook/check-session")
     public ResponseEntity<?> checkSession(HttpServletRequest request) {
 
-        System.out.println("🔍 GET /check-session - Cookies: " + Arrays.toString(request.getCookies()));
-        System.out.println("🔍 GET - Session ID from request: " + request.getRequestedSessionId());
-        System.out.println("🔍 GET - User-Agent: " + request.getHeader("User-Agent"));
-        System.out.println("🔍 GET - Origin: " + request.getHeader("Origin"));
+        if (logger.isDebugEnabled()) {
+            logger.debug("🔍 GET /check-session - Cookies: {}, User-Agent: {}, Origin: {}",
+                    request.getCookies() == null ? "[]" : Arrays.stream(request.getCookies()).map(Cookie::getName).toList(),
+                    request.getHeader("User-Agent"), request.getHeader("Origin"));
+        }
 
         HttpSession session = request.getSession(false);
-        System.out.println("🔍 GET - Session object: " + session);
+        logger.debug("🔍 GET - Session present: {}", session != null);
 
         if (session == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("No session");
@@ -0,0 +1,67 @@
+package com.example.backend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * One message of a stored chat conversation, written once the conversation is evicted from memory.
+ */
+@Entity
+@Table(name = "conversation_turn",
+        indexes = @Index(name = "idx_conversation_turn_conversation", columnList = "conversationId"),
+        uniqueConstraints = @UniqueConstraint(columnNames = {"conversationId", "turnIndex"}))
+public class ConversationTurn {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String conversationId;
+
+    private int turnIndex;
+
+    @Column(nullable = false, length = 16)
+    private String role;
+
+    @Lob
+    private String text;
+
+    protected ConversationTurn() {
+    }
+
+    public ConversationTurn(String conversationId, int turnIndex, String role, String text) {
+        this.conversationId = conversationId;
+        this.turnIndex = turnIndex;
+        this.role = role;
+        this.text = text;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public int getTurnIndex() {
+        return turnIndex;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
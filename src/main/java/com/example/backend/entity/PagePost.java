@@ -0,0 +1,86 @@
+package com.example.backend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.Instant;
+
+/**
+ * A post on a Facebook page, either read from the page feed or published by this backend.
+ */
+@Entity
+@Table(name = "page_post",
+        indexes = @Index(name = "idx_page_post_page_created", columnList = "pageId, createdTime"),
+        uniqueConstraints = @UniqueConstraint(columnNames = {"pageId", "postId"}))
+public class PagePost {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String pageId;
+
+    @Column(nullable = false)
+    private String postId;
+
+    @Lob
+    private String message;
+
+    @Column(nullable = false)
+    private Instant createdTime;
+
+    // Whether the post was read from the feed; only those advance the point incremental feed reads start from
+    private boolean fromFeed;
+
+    protected PagePost() {
+    }
+
+    public PagePost(String pageId, String postId, String message, Instant createdTime, boolean fromFeed) {
+        this.pageId = pageId;
+        this.postId = postId;
+        this.message = message;
+        this.createdTime = createdTime;
+        this.fromFeed = fromFeed;
+    }
+
+    /**
+     * Records that a post published by this backend was read back from the feed, with the feed's creation time.
+     */
+    public void seenInFeed(Instant createdTime) {
+        this.createdTime = createdTime;
+        this.fromFeed = true;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getPageId() {
+        return pageId;
+    }
+
+    public String getPostId() {
+        return postId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Instant getCreatedTime() {
+        return createdTime;
+    }
+
+    public boolean isFromFeed() {
+        return fromFeed;
+    }
+}
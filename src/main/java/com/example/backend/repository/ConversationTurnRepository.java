@@ -0,0 +1,15 @@
+package com.example.backend.repository;
+
+import com.example.backend.entity.ConversationTurn;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ConversationTurnRepository extends JpaRepository<ConversationTurn, Long> {
+
+    List<ConversationTurn> findByConversationIdOrderByTurnIndexAsc(String conversationId);
+
+    @Transactional
+    void deleteByConversationIdStartingWith(String prefix);
+}
@@ -0,0 +1,18 @@
+package com.example.backend.repository;
+
+import com.example.backend.entity.PagePost;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface PagePostRepository extends JpaRepository<PagePost, Long> {
+
+    List<PagePost> findByPageIdOrderByCreatedTimeDesc(String pageId, Pageable pageable);
+
+    Optional<PagePost> findFirstByPageIdAndFromFeedTrueOrderByCreatedTimeDesc(String pageId);
+
+    List<PagePost> findByPageIdAndPostIdIn(String pageId, Collection<String> postIds);
+}
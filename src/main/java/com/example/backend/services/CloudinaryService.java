@@ -1,11 +1,19 @@
 package com.example.backend.services;
 
 import com.cloudinary.Cloudinary;
+import com.example.backend.clients.DependencyGuard;
+import com.example.backend.utils.Deadline;
+import com.example.backend.utils.TraceSpans;
 import com.cloudinary.utils.ObjectUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -18,9 +26,16 @@ import java.util.Map;
 public class CloudinaryService {
 
     private final Cloudinary cloudinary;
+    private final DependencyGuard guard;
+    private final TraceSpans traceSpans;
 
-    public CloudinaryService(Cloudinary cloudinary) {
+    @Value("${cloudinary.upload-timeout:60s}")
+    private Duration uploadTimeout;
+
+    public CloudinaryService(Cloudinary cloudinary, @Qualifier("cloudinaryGuard") DependencyGuard guard, TraceSpans traceSpans) {
         this.cloudinary = cloudinary;
+        this.guard = guard;
+        this.traceSpans = traceSpans;
     }
 
     /**
@@ -31,7 +46,27 @@ public class CloudinaryService {
      * @throws IOException if an I/O error occurs during file upload
      */
     public String uploadImage(MultipartFile file) throws IOException {
-        Map<?, ?> uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
+        return uploadImage(file.getBytes());
+    }
+
+    private String uploadImage(byte[] image) throws IOException {
+        Map<?, ?> uploadResult = cloudinary.uploader().upload(image, ObjectUtils.emptyMap());
         return (String) uploadResult.get("url");
     }
+
+    /**
+     * Non-blocking variant of {@link #uploadImage(MultipartFile)}.
+     * The Cloudinary SDK only offers a blocking client, so the upload runs on Reactor's bounded elastic
+     * scheduler instead of the caller's thread. Uploads run inside the Cloudinary {@link DependencyGuard},
+     * which also bounds how many bounded elastic threads they can occupy. The caller stops waiting once the
+     * remaining request {@link Deadline} has passed; the SDK call itself cannot be interrupted and finishes in the background.
+     *
+     * @param image the image content; read from the request beforehand, since multipart files are
+     *              cleaned up when the request completes
+     * @return the URL of the uploaded image
+     */
+    public Mono<String> uploadImageAsync(byte[] image) {
+        return traceSpans.span("CloudinaryService.uploadImage", guard.protect(Deadline.bound(Mono.fromCallable(() -> uploadImage(image))
+                .subscribeOn(Schedulers.boundedElastic()), uploadTimeout)));
+    }
 }
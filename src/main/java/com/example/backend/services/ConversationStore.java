@@ -0,0 +1,303 @@
+package com.example.backend.services;
+
+import com.example.backend.entity.ConversationTurn;
+import com.example.backend.repository.ConversationTurnRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side chat history, so clients only send the newest message instead of the whole conversation.
+ * Recently used conversations are kept in memory, up to {@code chat.conversation.cache-size} of them.
+ * The least recently used conversation is spilled to the database when the limit is reached, and loaded
+ * back from there when it continues. Messages are kept in Gemini API format, ready to be sent.
+ * A user message is stored together with its reply, once the reply was given.
+ * Conversations are scoped to a session and deleted when it ends; sessions are not kept across restarts,
+ * so the stored turns left over from a previous run are deleted on startup.
+ */
+@Service
+public class ConversationStore implements HttpSessionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationStore.class);
+
+    private final ConversationTurnRepository repository;
+    private final int maxConversations;
+
+    // Access-ordered, guarded by its own monitor
+    private final LinkedHashMap<String, Conversation> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // Evicted conversations whose new turns are still being written
+    private final Map<String, Conversation> spilling = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong spills = new AtomicLong();
+
+    public ConversationStore(ConversationTurnRepository repository,
+                             @Value("${chat.conversation.cache-size:500}") int maxConversations) {
+        this.repository = repository;
+        this.maxConversations = maxConversations;
+    }
+
+    /**
+     * Returns the key of a conversation of a session.
+     *
+     * @param sessionId      The id of the HTTP session
+     * @param conversationId The id the client gave the conversation
+     * @return The conversation key used by this store
+     */
+    public static String key(String sessionId, String conversationId) {
+        return sessionId + ":" + conversationId;
+    }
+
+    /**
+     * Returns a conversation with a new user message added, without storing the message yet.
+     * The message is stored together with its reply by {@link #appendExchange}, so a failed request leaves no
+     * unanswered turn behind.
+     *
+     * @param conversationId The conversation key, unique per session
+     * @param text           The text of the user message
+     * @return A copy of the whole conversation including the new message, in Gemini API format
+     */
+    public List<Map<String, Object>> withUserMessage(String conversationId, String text) {
+        Conversation conversation = getOrLoad(conversationId);
+        synchronized (conversation) {
+            List<Map<String, Object>> messages = new ArrayList<>(conversation.messages);
+            messages.add(message("user", text));
+            return messages;
+        }
+    }
+
+    /**
+     * Appends a user message and the reply the user was given to a conversation, starting the conversation
+     * if it does not exist yet. May read from or write to the database.
+     *
+     * @param conversationId The conversation key, unique per session
+     * @param userText       The text of the user message
+     * @param reply          The reply text
+     */
+    public void appendExchange(String conversationId, String userText, String reply) {
+        while (true) {
+            Conversation conversation = getOrLoad(conversationId);
+            synchronized (conversation) {
+                // Spilled and dropped from memory since it was looked up, the next lookup loads it with its turns
+                if (conversation.detached) {
+                    continue;
+                }
+                conversation.messages.add(message("user", userText));
+                conversation.messages.add(message("model", reply));
+                return;
+            }
+        }
+    }
+
+    private Conversation getOrLoad(String conversationId) {
+        List<Map.Entry<String, Conversation>> evicted = new ArrayList<>();
+        Conversation conversation;
+        synchronized (cache) {
+            conversation = cache.get(conversationId);
+            if (conversation != null) {
+                hits.incrementAndGet();
+                return conversation;
+            }
+            conversation = spilling.get(conversationId);
+            if (conversation != null) {
+                cache(conversationId, conversation, evicted);
+            }
+        }
+
+        if (conversation == null) {
+            Conversation loaded = load(conversationId);
+            synchronized (cache) {
+                conversation = cache.get(conversationId);
+                if (conversation == null) {
+                    conversation = loaded;
+                    cache(conversationId, conversation, evicted);
+                }
+                // Otherwise loaded concurrently by another request
+            }
+        }
+
+        for (Map.Entry<String, Conversation> entry : evicted) {
+            evict(entry.getKey(), entry.getValue());
+        }
+        return conversation;
+    }
+
+    /**
+     * Puts a conversation in the cache and moves the least recently used ones over the limit to the spilling ones.
+     * Callers hold the cache monitor and {@link #evict} the returned conversations once it is released.
+     */
+    private void cache(String conversationId, Conversation conversation, List<Map.Entry<String, Conversation>> evicted) {
+        cache.put(conversationId, conversation);
+        Iterator<Map.Entry<String, Conversation>> eldest = cache.entrySet().iterator();
+        while (cache.size() > maxConversations && eldest.hasNext()) {
+            Map.Entry<String, Conversation> entry = eldest.next();
+            eldest.remove();
+            spilling.put(entry.getKey(), entry.getValue());
+            evicted.add(entry);
+        }
+    }
+
+    /**
+     * Writes an evicted conversation and drops it from memory, unless it was used again in the meantime.
+     * Turns appended after this only go to a conversation loaded back from the database, see {@link #appendExchange}.
+     * A conversation that could not be written stays in memory, and is written again when it is next evicted.
+     */
+    private void evict(String conversationId, Conversation conversation) {
+        synchronized (conversation) {
+            boolean stored = spill(conversationId, conversation);
+            synchronized (cache) {
+                boolean cachedAgain = cache.get(conversationId) == conversation;
+                if (stored || cachedAgain) {
+                    spilling.remove(conversationId, conversation);
+                }
+                conversation.detached = stored && !cachedAgain;
+            }
+        }
+    }
+
+    private Conversation load(String conversationId) {
+        Conversation conversation = new Conversation();
+        List<ConversationTurn> turns = repository.findByConversationIdOrderByTurnIndexAsc(conversationId);
+        if (!turns.isEmpty()) {
+            loads.incrementAndGet();
+            for (ConversationTurn turn : turns) {
+                conversation.messages.add(message(turn.getRole(), turn.getText()));
+            }
+            conversation.persisted = turns.size();
+        }
+        return conversation;
+    }
+
+    /**
+     * Writes the turns of a conversation that are not in the database yet.
+     *
+     * @return Whether all turns of the conversation are in the database, or the conversation was forgotten
+     */
+    private boolean spill(String conversationId, Conversation conversation) {
+        synchronized (conversation) {
+            if (conversation.detached) {
+                return true;
+            }
+            List<ConversationTurn> newTurns = new ArrayList<>();
+            for (int i = conversation.persisted; i < conversation.messages.size(); i++) {
+                Map<String, Object> message = conversation.messages.get(i);
+                newTurns.add(new ConversationTurn(conversationId, i, (String) message.get("role"), messageText(message)));
+            }
+            if (newTurns.isEmpty()) {
+                return true;
+            }
+            try {
+                repository.saveAll(newTurns);
+                conversation.persisted = conversation.messages.size();
+                spills.incrementAndGet();
+                return true;
+            } catch (RuntimeException e) {
+                logger.warn("⚠️ Could not store conversation {}, keeping it in memory: {}", conversationId, e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Deletes the stored turns of a previous run. Their sessions ended with it, so no request can continue them.
+     */
+    @PostConstruct
+    public void deleteStaleConversations() {
+        repository.deleteAllInBatch();
+    }
+
+    /**
+     * Drops the conversations of a session that ended, from memory and from the database.
+     */
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        forgetSession(event.getSession().getId());
+    }
+
+    /**
+     * Drops all conversations of a session, from memory and from the database.
+     *
+     * @param sessionId The id of the HTTP session
+     */
+    public void forgetSession(String sessionId) {
+        String prefix = key(sessionId, "");
+        List<Conversation> forgotten = new ArrayList<>();
+        synchronized (cache) {
+            removeSession(cache, prefix, forgotten);
+            removeSession(spilling, prefix, forgotten);
+        }
+        // Stops an eviction in progress from writing the conversation after its turns were deleted
+        for (Conversation conversation : forgotten) {
+            synchronized (conversation) {
+                conversation.detached = true;
+            }
+        }
+        try {
+            repository.deleteByConversationIdStartingWith(prefix);
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Could not delete the conversations of an ended session: {}", e.getMessage());
+        }
+    }
+
+    private static void removeSession(Map<String, Conversation> conversations, String prefix, List<Conversation> removed) {
+        Iterator<Map.Entry<String, Conversation>> entries = conversations.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Conversation> entry = entries.next();
+            if (entry.getKey().startsWith(prefix)) {
+                removed.add(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+    private static Map<String, Object> message(String role, String text) {
+        return Map.of("role", role, "parts", List.of(Map.of("text", text)));
+    }
+
+    private static String messageText(Map<String, Object> message) {
+        if (message.get("parts") instanceof List<?> parts && !parts.isEmpty()
+                && parts.get(0) instanceof Map<?, ?> part && part.get("text") instanceof String text) {
+            return text;
+        }
+        return "";
+    }
+
+    public int getCachedConversationCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getSpillCount() {
+        return spills.get();
+    }
+
+    private static final class Conversation {
+        private final List<Map<String, Object>> messages = new ArrayList<>();
+        // Number of leading messages already in the database
+        private int persisted;
+        // Evicted and no longer reachable through the store
+        private boolean detached;
+    }
+}
@@ -1,18 +1,24 @@
 package com.example.backend.services;
 
-import com.example.backend.controllers.MainController;
+import com.example.backend.clients.DependencyUnavailableException;
+import com.example.backend.clients.GraphApiClient;
+import com.example.backend.utils.Deadline;
 import com.example.backend.utils.GeminiAiService;
+import com.example.backend.utils.NearDuplicateIndex;
+import com.example.backend.utils.StageMetrics;
+import com.example.backend.utils.TraceSpans;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -20,6 +26,19 @@ import java.util.*;
  * for posting text messages, uploading photos, and retrieving existing posts
  * from a Facebook page. It leverages the Gemini AI service for generating unique
  * content for posts.
+ * Every operation has a non-blocking variant returning a Mono, and a blocking variant
+ * for callers that run on their own thread, such as scheduled tasks. The non-blocking variants run within the
+ * {@link Deadline} of the calling request; the blocking variants set their own from chat.deadline.scheduled-post.
+ * Calls rejected because Gemini or the Graph API is unavailable fail with a {@link DependencyUnavailableException}
+ * instead of being reported as a failed post.
+ * The history fetch, prompt build, generation and Graph post stages are timed with {@link StageMetrics};
+ * the blocking {@link #postToFacebook(HttpSession)} run by scheduled tasks is timed as the "scheduled-post" pipeline.
+ * Each call is traced as a span with {@link TraceSpans}.
+ * The existing posts of a page are read from the {@link PostHistory}, which only fetches the posts added to the feed
+ * since the last read, and kept in the {@link FeedCache}. Posts published here are added to both,
+ * so most generations skip the feed fetch.
+ * Only a small sample of the newest posts goes into the prompt; a generated post that is a near-duplicate of any
+ * cached post, as found by the {@link NearDuplicateIndex}, is generated again.
  */
 @Service
 public class FacebookService {
@@ -27,14 +46,43 @@ public class FacebookService {
     @Autowired
 //    private FacebookPageRepository repository;
 
-    private static final Logger logger = LoggerFactory.getLogger(MainController.class);
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final Logger logger = LoggerFactory.getLogger(FacebookService.class);
+    // Prompts, existing posts and generated text; sampled by logging.payload.sample-rate
+    private static final Logger payloadLogger = LoggerFactory.getLogger("payload." + FacebookService.class.getName());
     private final Gson gson = new Gson();
     private final GeminiAiService geminiAiService;
+    private final GraphApiClient graphApiClient;
+    private final StageMetrics stageMetrics;
+    private final TraceSpans traceSpans;
+    private final FeedCache feedCache;
+    private final PostHistory postHistory;
+    private final Counter regeneratedDuplicates;
+    private final Counter rejectedDuplicates;
+
+    @Value("${chat.deadline.scheduled-post:120s}")
+    private Duration blockingDeadline;
+
+    @Value("${facebook.post.prompt-sample:10}")
+    private int promptSample;
+
+    @Value("${facebook.post.min-similarity:0.3}")
+    private double minSimilarity;
 
+    @Value("${facebook.post.max-regenerations:2}")
+    private int maxRegenerations;
 
-    public FacebookService(GeminiAiService geminiAiService) {
+
+    public FacebookService(GeminiAiService geminiAiService, GraphApiClient graphApiClient, StageMetrics stageMetrics,
+                           TraceSpans traceSpans, FeedCache feedCache, PostHistory postHistory,
+                           MeterRegistry meterRegistry) {
         this.geminiAiService = geminiAiService;
+        this.graphApiClient = graphApiClient;
+        this.stageMetrics = stageMetrics;
+        this.traceSpans = traceSpans;
+        this.feedCache = feedCache;
+        this.postHistory = postHistory;
+        this.regeneratedDuplicates = meterRegistry.counter("post.near.duplicates", "outcome", "regenerated");
+        this.rejectedDuplicates = meterRegistry.counter("post.near.duplicates", "outcome", "rejected");
 //        this.repository = repository;
     }
 
@@ -50,44 +98,43 @@ public class FacebookService {
      *         If the operation fails, the map contains keys "error" (error description) and optionally "details" (additional failure information).
      */
     public Map<String, Object> postToFacebook(HttpSession session) {
-        try {
-            String pageId = (String) session.getAttribute("pageId");
-            String pageAccessToken = (String) session.getAttribute("pageAccessToken");
-
-            if (pageId == null || pageAccessToken == null) {
-                return Map.of("error", "Missing pageId or pageAccessToken from session.");
-            }
-
-            String generatedMessage = generateUniqueFacebookPost(session);
-            if (generatedMessage == null) {
-                return Map.of("error", "Failed to generate a unique post message.");
-            }
-
-            Map<String, Object> postData = new HashMap<>();
-            postData.put("message", generatedMessage);
-            postData.put("access_token", pageAccessToken);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> request = new HttpEntity<>(gson.toJson(postData), headers);
-
-            ResponseEntity<String> fbResponse = restTemplate.postForEntity(
-                    "https://graph.facebook.com/v22.0/" + pageId + "/feed",
-                    request,
-                    String.class
-            );
-
-            Map fbData = gson.fromJson(fbResponse.getBody(), Map.class);
-            if (fbData.containsKey("id")) {
-                return Map.of("success", true, "message", generatedMessage);
-            } else {
-                return Map.of("error", "Failed to post", "details", fbData);
-            }
-
-        } catch (Exception e) {
-            logger.error("Error processing post request", e);
-            return Map.of("error", "Server error", "message", e.getMessage());
+        return stageMetrics.task("scheduled-post", Deadline.enforce(postToFacebookAsync(session), blockingDeadline)).block();
+    }
+
+    /**
+     * Non-blocking variant of {@link #postToFacebook(HttpSession)}.
+     * The session attributes are read when this method is called, not when the Mono is subscribed.
+     */
+    public Mono<Map<String, Object>> postToFacebookAsync(HttpSession session) {
+        String pageId = (String) session.getAttribute("pageId");
+        String pageAccessToken = (String) session.getAttribute("pageAccessToken");
+
+        if (pageId == null || pageAccessToken == null) {
+            return Mono.just(Map.of("error", "Missing pageId or pageAccessToken from session."));
         }
+
+        return traceSpans.span("FacebookService.postToFacebook", generateUniqueFacebookPost(pageId, pageAccessToken)
+                .flatMap(generatedMessage -> {
+                    Map<String, Object> postData = new HashMap<>();
+                    postData.put("message", generatedMessage);
+                    postData.put("access_token", pageAccessToken);
+
+                    return stageMetrics.stage("graph-post", "graph", graphApiClient.publishPost(pageId, postData))
+                            .flatMap(body -> {
+                                Map fbData = gson.fromJson(body, Map.class);
+                                if (fbData.containsKey("id")) {
+                                    return recordPublished(pageId, fbData, generatedMessage)
+                                            .thenReturn(Map.<String, Object>of("success", true, "message", generatedMessage));
+                                } else {
+                                    return Mono.just(Map.<String, Object>of("error", "Failed to post", "details", fbData));
+                                }
+                            });
+                })
+                .defaultIfEmpty(Map.<String, Object>of("error", "Failed to generate a unique post message."))
+                .onErrorResume(e -> !(e instanceof DependencyUnavailableException), e -> {
+                    logger.error("Error processing post request", e);
+                    return Mono.just(Map.<String, Object>of("error", "Server error", "message", String.valueOf(e.getMessage())));
+                }));
     }
 
     /**
@@ -97,116 +144,131 @@ public class FacebookService {
      * @return Response map with upload status
      */
     public Map<String, Object> uploadPhotoToFacebook(HttpSession session, String imageUrl) {
-        try {
-            String pageId = (String) session.getAttribute("pageId");
-            String pageAccessToken = (String) session.getAttribute("pageAccessToken");
-
-            if (pageId == null || pageAccessToken == null) {
-                return Map.of("error", "Missing pageId or pageAccessToken from session.");
-            }
-
-            if (imageUrl == null) {
-                return Map.of("error", "No image URL provided");
-            }
-
-            String generatedMessage = generateUniqueFacebookPost(session);
-            if (generatedMessage == null) {
-                return Map.of("error", "Failed to generate a unique post message.");
-            }
-
-            Map<String, String> postData = new HashMap<>();
-            postData.put("url", imageUrl);
-            postData.put("access_token", pageAccessToken);
-            postData.put("message", generatedMessage);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> request = new HttpEntity<>(gson.toJson(postData), headers);
-
-            ResponseEntity<String> fbResponse = restTemplate.postForEntity(
-                    "https://graph.facebook.com/" + pageId + "/photos", request, String.class);
-
-            Map fbData = gson.fromJson(fbResponse.getBody(), Map.class);
-            if (fbData.containsKey("id")) {
-                return Map.of("success", true, "message", generatedMessage);
-            } else {
-                return Map.of("error", "Image upload from URL failed!", "details", fbData);
-            }
-
-        } catch (Exception e) {
-            logger.error("Error processing upload photo request", e);
-            return Map.of("error", "Server error", "message", e.getMessage());
-        }
+        return Deadline.enforce(uploadPhotoToFacebookAsync(session, imageUrl), blockingDeadline).block();
     }
 
     /**
-     * Generates a unique Facebook post using Gemini AI
-     *
-     * @return Unique text for a Facebook post
+     * Non-blocking variant of {@link #uploadPhotoToFacebook(HttpSession, String)}.
+     * The session attributes are read when this method is called, not when the Mono is subscribed.
      */
-    private String generateUniqueFacebookPost(HttpSession session) {
-        try {
-
-            String pageId = (String) session.getAttribute("pageId");
-            String pageAccessToken = (String) session.getAttribute("pageAccessToken");
-
-            if (pageId == null || pageAccessToken == null) {
-                return "Missing pageId or pageAccessToken from session.";
-            }
-
-            // Step 1: Get existing posts from the page
-            List<String> existingMessages = getExistingPagePosts(session);
-            System.out.println("Existing messages on page " + pageId + ": " + existingMessages);
-
-            // Step 2: Create a prompt for the AI
-            String aiPrompt = geminiAiService.createUniquePostPrompt(existingMessages);
-            System.out.println("Sending prompt for page " + pageId + ": " + aiPrompt);
-
-            // Step 3: Get a response from the AI
-            List<Map<String, Object>> promptAsList = geminiAiService.createSingleUserMessage(aiPrompt);
-            String textSentence = geminiAiService.generateText(promptAsList);
+    public Mono<Map<String, Object>> uploadPhotoToFacebookAsync(HttpSession session, String imageUrl) {
+        String pageId = (String) session.getAttribute("pageId");
+        String pageAccessToken = (String) session.getAttribute("pageAccessToken");
 
-            System.out.println("Generated sentence for page " + pageId + ": " + textSentence);
-            return textSentence;
+        if (pageId == null || pageAccessToken == null) {
+            return Mono.just(Map.of("error", "Missing pageId or pageAccessToken from session."));
+        }
 
-        } catch (Exception e) {
-            System.err.println("Error generating unique Facebook post for pageId" + e.getMessage());
-            return null;
+        if (imageUrl == null) {
+            return Mono.just(Map.of("error", "No image URL provided"));
         }
+
+        return traceSpans.span("FacebookService.uploadPhotoToFacebook", generateUniqueFacebookPost(pageId, pageAccessToken)
+                .flatMap(generatedMessage -> {
+                    Map<String, String> postData = new HashMap<>();
+                    postData.put("url", imageUrl);
+                    postData.put("access_token", pageAccessToken);
+                    postData.put("message", generatedMessage);
+
+                    return stageMetrics.stage("graph-post", "graph", graphApiClient.publishPhoto(pageId, postData))
+                            .flatMap(body -> {
+                                Map fbData = gson.fromJson(body, Map.class);
+                                if (fbData.containsKey("id")) {
+                                    return recordPublished(pageId, fbData, generatedMessage)
+                                            .thenReturn(Map.<String, Object>of("success", true, "message", generatedMessage));
+                                } else {
+                                    return Mono.just(Map.<String, Object>of("error", "Image upload from URL failed!", "details", fbData));
+                                }
+                            });
+                })
+                .defaultIfEmpty(Map.<String, Object>of("error", "Failed to generate a unique post message."))
+                .onErrorResume(e -> !(e instanceof DependencyUnavailableException), e -> {
+                    logger.error("Error processing upload photo request", e);
+                    return Mono.just(Map.<String, Object>of("error", "Server error", "message", String.valueOf(e.getMessage())));
+                }));
     }
 
     /**
-     * Retrieves existing posts from a Facebook page
+     * Generates a unique Facebook post using Gemini AI
      *
-     * @return List of existing posts message
+     * @return Unique text for a Facebook post, or an empty Mono if it could not be generated
      */
-    private List<String> getExistingPagePosts(HttpSession session) {
-
-        String pageId = (String) session.getAttribute("pageId");
-        String pageAccessToken = (String) session.getAttribute("pageAccessToken");
-
-        if (pageId == null || pageAccessToken == null) {
-            return null;
-        }
+    private Mono<String> generateUniqueFacebookPost(String pageId, String pageAccessToken) {
+        // Step 1: Get existing posts from the page
+        return traceSpans.span("FacebookService.getExistingPagePosts", getExistingPagePosts(pageId, pageAccessToken))
+                .flatMap(existingPosts -> {
+                    logger.info("Generating a post for page {} from {} existing posts", pageId, existingPosts.size());
+                    payloadLogger.info("Existing messages on page {}: {}", pageId, existingPosts.messages());
+                    return generateDistinctPost(pageId, existingPosts, existingPosts.newest(promptSample), 0);
+                })
+                .doOnNext(textSentence -> payloadLogger.info("Generated sentence for page {}: {}", pageId, textSentence))
+                .onErrorResume(e -> !(e instanceof DependencyUnavailableException), e -> {
+                    logger.warn("Error generating unique Facebook post for page {}: {}", pageId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
 
-        String url = "https://graph.facebook.com/v22.0/" + pageId + "/feed?access_token=" + pageAccessToken;
-        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-        JsonObject data = gson.fromJson(response.getBody(), JsonObject.class);
-
-        List<String> existingMessages = new ArrayList<>();
-        if (data != null && data.has("data") && data.get("data").isJsonArray()) {
-            JsonArray postsArray = data.getAsJsonArray("data");
-            for (JsonElement postElement : postsArray) {
-                if (postElement.isJsonObject()) {
-                    JsonObject post = postElement.getAsJsonObject();
-                    if (post.has("message") && post.get("message").isJsonPrimitive()) {
-                        existingMessages.add(post.getAsJsonPrimitive("message").getAsString());
+    /**
+     * Generates a post and checks it against all existing posts of the page.
+     * A near-duplicate is generated again, with the post it resembles and the rejected text added to the
+     * sentences the prompt asks to differ from, up to facebook.post.max-regenerations times.
+     *
+     * @param promptMessages The sentences the prompt asks the new post to differ from
+     * @return The generated text, or an empty Mono if every attempt was a near-duplicate
+     */
+    private Mono<String> generateDistinctPost(String pageId, NearDuplicateIndex existingPosts, List<String> promptMessages, int attempt) {
+        // Step 2: Create a prompt for the AI
+        return stageMetrics.stage("prompt-build", "none", Mono.fromCallable(() -> {
+                    String aiPrompt = geminiAiService.createUniquePostPrompt(promptMessages);
+                    payloadLogger.info("Sending prompt for page {}: {}", pageId, aiPrompt);
+                    return geminiAiService.createSingleUserMessage(aiPrompt);
+                }))
+                // Step 3: Get a response from the AI
+                .flatMap(promptAsList -> stageMetrics.stage("generation", "gemini", geminiAiService.generateTextAsync(promptAsList)))
+                // Step 4: Reject near-duplicates of existing posts
+                .flatMap(textSentence -> {
+                    String duplicate = existingPosts.findNearDuplicate(textSentence, minSimilarity);
+                    if (duplicate == null) {
+                        return Mono.just(textSentence);
                     }
-                }
-            }
-        }
+                    payloadLogger.info("Generated sentence for page {} is a near-duplicate of: {}", pageId, duplicate);
+                    if (attempt >= maxRegenerations) {
+                        rejectedDuplicates.increment();
+                        logger.warn("Every generated post for page {} was a near-duplicate of an existing post", pageId);
+                        return Mono.empty();
+                    }
+                    regeneratedDuplicates.increment();
+                    logger.info("Generated post for page {} is a near-duplicate of an existing post, generating again", pageId);
+                    List<String> avoid = new ArrayList<>(promptMessages.size() + 2);
+                    avoid.add(textSentence);
+                    if (!promptMessages.contains(duplicate)) {
+                        avoid.add(duplicate);
+                    }
+                    avoid.addAll(promptMessages);
+                    return generateDistinctPost(pageId, existingPosts, avoid, attempt + 1);
+                });
+    }
+
+    /**
+     * Retrieves existing posts from a Facebook page, from the {@link FeedCache} if they are cached.
+     * On a miss, the {@link PostHistory} of the page is brought up to date and read;
+     * only this is timed as the history-fetch stage.
+     *
+     * @return The existing post messages, indexed for near-duplicate checks
+     */
+    private Mono<NearDuplicateIndex> getExistingPagePosts(String pageId, String pageAccessToken) {
+        return feedCache.getIndex(pageId, () -> stageMetrics.stage("history-fetch", "graph",
+                postHistory.getMessages(pageId, pageAccessToken)));
+    }
 
-        return existingMessages;
+    /**
+     * Adds a post we just published to the cached and stored history of the page.
+     * Photo uploads answer with the photo id and the id of the post as post_id.
+     */
+    private Mono<Void> recordPublished(String pageId, Map<?, ?> fbData, String message) {
+        feedCache.append(pageId, message);
+        Object postId = fbData.containsKey("post_id") ? fbData.get("post_id") : fbData.get("id");
+        return postHistory.recordPublished(pageId, String.valueOf(postId), message);
     }
 
-}
\ No newline at end of file
+}
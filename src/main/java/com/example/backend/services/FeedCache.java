@@ -0,0 +1,200 @@
+package com.example.backend.services;
+
+import com.example.backend.utils.NearDuplicateIndex;
+import com.example.backend.utils.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Per-page cache of the recent post messages on a Facebook page, which the post generation compares new posts against.
+ * The messages are kept as a {@link NearDuplicateIndex}, so their shingles are only computed once per post.
+ * A page's messages are loaded on a miss and kept for a time to live; concurrent misses for the
+ * same page share one load. Messages we publish ourselves are added to the cached messages right away, so the
+ * next generation for the page sees them without fetching the feed again.
+ * A message published while the page is not cached, or while its feed is being loaded, is kept and merged into the
+ * loaded messages if the Graph API does not return it yet.
+ * At most feed.cache.max-pages pages are kept, least recently used first out, each with at most
+ * feed.cache.max-messages messages. Posts made outside this backend show up once the entry expires.
+ * Hits, misses and evictions are published as the feed.cache.* metrics.
+ */
+@Component
+public class FeedCache {
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final int maxPages;
+    private final int maxMessages;
+
+    // Access-ordered, guarded by its own monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final SingleFlight<NearDuplicateIndex> loads;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter appends;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    public FeedCache(MeterRegistry meterRegistry,
+                     @Value("${feed.cache.enabled:true}") boolean enabled,
+                     @Value("${feed.cache.ttl:10m}") Duration ttl,
+                     @Value("${feed.cache.max-pages:1000}") int maxPages,
+                     @Value("${feed.cache.max-messages:100}") int maxMessages) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.maxPages = maxPages;
+        this.maxMessages = maxMessages;
+        this.loads = new SingleFlight<>("facebook.feed", meterRegistry);
+
+        this.hits = meterRegistry.counter("feed.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("feed.cache.requests", "result", "miss");
+        this.appends = meterRegistry.counter("feed.cache.appends");
+        this.sizeEvictions = meterRegistry.counter("feed.cache.evictions", "cause", "size");
+        this.expiredEvictions = meterRegistry.counter("feed.cache.evictions", "cause", "expired");
+        Gauge.builder("feed.cache.size", this, FeedCache::size).register(meterRegistry);
+    }
+
+    /**
+     * @param index     The page's messages, newest first; null while the page has only been published to, not loaded
+     * @param published Messages published since the last load, newest first, merged into the next load
+     */
+    private record Entry(NearDuplicateIndex index, List<String> published, long expiresAtNanos) {
+
+        boolean isExpired() {
+            return expiresAtNanos - System.nanoTime() <= 0;
+        }
+    }
+
+    /**
+     * Returns the cached messages of a page, or loads them.
+     *
+     * @param pageId The page
+     * @param loader Fetches the page's messages, newest first; only subscribed on a miss
+     * @return The index of the page's recent messages
+     */
+    public Mono<NearDuplicateIndex> getIndex(String pageId, Supplier<Mono<List<String>>> loader) {
+        if (!enabled) {
+            return loader.get().map(NearDuplicateIndex::of);
+        }
+        return Mono.defer(() -> {
+            NearDuplicateIndex cached = lookup(pageId);
+            if (cached != null) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+            misses.increment();
+            return loads.execute(pageId, () -> loader.get().map(messages -> store(pageId, messages)));
+        });
+    }
+
+    /**
+     * Adds a message we just published to the page's cached messages.
+     */
+    public void append(String pageId, String message) {
+        if (!enabled || message == null) {
+            return;
+        }
+        appends.increment();
+        synchronized (entries) {
+            Entry entry = entries.get(pageId);
+            if (entry == null || entry.isExpired()) {
+                entries.put(pageId, new Entry(null, List.of(message), System.nanoTime() + ttl.toNanos()));
+                evictOverflow();
+                return;
+            }
+            NearDuplicateIndex index = entry.index() == null ? null : entry.index().withNewest(message, maxMessages);
+            entries.put(pageId, new Entry(index, prepend(message, entry.published()), entry.expiresAtNanos()));
+        }
+    }
+
+    /**
+     * Drops the cached messages of a page, e.g. after a post was deleted.
+     */
+    public void invalidate(String pageId) {
+        synchronized (entries) {
+            entries.remove(pageId);
+        }
+    }
+
+    private NearDuplicateIndex lookup(String pageId) {
+        synchronized (entries) {
+            Entry entry = entries.get(pageId);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired()) {
+                entries.remove(pageId);
+                expiredEvictions.increment();
+                return null;
+            }
+            return entry.index();
+        }
+    }
+
+    /**
+     * Stores freshly loaded messages, adding the ones we published that the feed does not contain yet.
+     *
+     * @return The index of the stored messages
+     */
+    private NearDuplicateIndex store(String pageId, List<String> loaded) {
+        synchronized (entries) {
+            Entry previous = entries.get(pageId);
+            List<String> messages = loaded;
+            if (previous != null && !previous.published().isEmpty()) {
+                Set<String> present = new HashSet<>(loaded);
+                List<String> merged = new ArrayList<>(previous.published().size() + loaded.size());
+                for (String message : previous.published()) {
+                    if (!present.contains(message)) {
+                        merged.add(message);
+                    }
+                }
+                merged.addAll(loaded);
+                messages = merged;
+            }
+            NearDuplicateIndex index = NearDuplicateIndex.of(messages.subList(0, Math.min(messages.size(), maxMessages)));
+            entries.put(pageId, new Entry(index, List.of(), System.nanoTime() + ttl.toNanos()));
+            evictOverflow();
+            return index;
+        }
+    }
+
+    private List<String> prepend(String message, List<String> messages) {
+        List<String> updated = new ArrayList<>(Math.min(messages.size() + 1, maxMessages));
+        updated.add(message);
+        updated.addAll(messages.subList(0, Math.min(messages.size(), maxMessages - 1)));
+        return List.copyOf(updated);
+    }
+
+    // Callers hold the entries monitor
+    private void evictOverflow() {
+        var eldest = entries.entrySet().iterator();
+        while (entries.size() > maxPages && eldest.hasNext()) {
+            Map.Entry<String, Entry> entry = eldest.next();
+            eldest.remove();
+            if (entry.getValue().isExpired()) {
+                expiredEvictions.increment();
+            } else {
+                sizeEvictions.increment();
+            }
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.backend.services;
+
+import com.example.backend.clients.GraphApiClient;
+import com.example.backend.entity.PagePost;
+import com.example.backend.repository.PagePostRepository;
+import com.example.backend.utils.FeedPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Post history of each page, kept in the page_post table so the feed is not downloaded again for every post.
+ * The first read of a page stores its latest facebook.feed.max-posts posts; later reads only request the posts
+ * created since the newest post read from the feed and add the new ones. Posts published by this backend are stored
+ * right away; they do not move the point the next feed read starts from, so posts made elsewhere in the
+ * meantime are still read.
+ * If the feed cannot be read, the stored history is used as long as the page has one.
+ * Database calls run on the bounded elastic scheduler.
+ */
+@Service
+public class PostHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostHistory.class);
+
+    // created_time as sent by the Graph API, e.g. 2024-05-01T08:30:00+0000
+    private static final DateTimeFormatter CREATED_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ");
+
+    private final PagePostRepository repository;
+    private final GraphApiClient graphApiClient;
+
+    @Value("${facebook.feed.page-size:25}")
+    private int feedPageSize;
+
+    @Value("${facebook.feed.max-posts:100}")
+    private int feedMaxPosts;
+
+    public PostHistory(PagePostRepository repository, GraphApiClient graphApiClient) {
+        this.repository = repository;
+        this.graphApiClient = graphApiClient;
+    }
+
+    /**
+     * Adds the posts created on the page since the last read to the history, then returns the latest messages.
+     *
+     * @return The messages of the latest facebook.feed.max-posts posts of the page, newest first
+     */
+    public Mono<List<String>> getMessages(String pageId, String pageAccessToken) {
+        return Mono.fromCallable(() -> repository.findFirstByPageIdAndFromFeedTrueOrderByCreatedTimeDesc(pageId)
+                        .map(PagePost::getCreatedTime))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(since -> graphApiClient.getFeedPosts(pageId, pageAccessToken, feedPageSize, feedMaxPosts, since.orElse(null))
+                        .collectList())
+                .flatMap(posts -> Mono.fromRunnable(() -> store(pageId, posts))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .then(readMessages(pageId))
+                .onErrorResume(e -> readMessages(pageId)
+                        .flatMap(stored -> {
+                            if (stored.isEmpty()) {
+                                return Mono.error(e);
+                            }
+                            logger.warn("⚠️ Could not read the feed of page {}, using {} stored posts: {}", pageId, stored.size(), e.getMessage());
+                            return Mono.just(stored);
+                        }));
+    }
+
+    /**
+     * Stores a post this backend just published.
+     *
+     * @param postId The id of the new post, as returned by the Graph API
+     */
+    public Mono<Void> recordPublished(String pageId, String postId, String message) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        repository.save(new PagePost(pageId, postId, message, Instant.now(), false));
+                    } catch (DataIntegrityViolationException e) {
+                        // Already read back from the feed
+                        logger.debug("Post {} of page {} is already stored", postId, pageId);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    logger.warn("⚠️ Could not store post {} of page {}: {}", postId, pageId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<List<String>> readMessages(String pageId) {
+        return Mono.fromCallable(() -> repository.findByPageIdOrderByCreatedTimeDesc(pageId, PageRequest.of(0, feedMaxPosts))
+                        .stream()
+                        .map(PagePost::getMessage)
+                        .toList())
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Adds the posts read from the feed that are not stored yet, and marks the stored ones we published as read.
+     * The since parameter includes the newest post of the previous read, so it usually comes back again.
+     */
+    private void store(String pageId, List<FeedPage.Post> posts) {
+        Map<String, FeedPage.Post> byId = new HashMap<>();
+        for (FeedPage.Post post : posts) {
+            if (post.id() != null) {
+                byId.putIfAbsent(post.id(), post);
+            }
+        }
+        if (byId.isEmpty()) {
+            return;
+        }
+
+        List<PagePost> changed = new ArrayList<>();
+        for (PagePost stored : repository.findByPageIdAndPostIdIn(pageId, byId.keySet())) {
+            FeedPage.Post post = byId.remove(stored.getPostId());
+            if (!stored.isFromFeed()) {
+                stored.seenInFeed(createdTime(post));
+                changed.add(stored);
+            }
+        }
+        for (FeedPage.Post post : byId.values()) {
+            changed.add(new PagePost(pageId, post.id(), post.message(), createdTime(post), true));
+        }
+        repository.saveAll(changed);
+        logger.debug("Stored {} new posts of page {}", byId.size(), pageId);
+    }
+
+    private static Instant createdTime(FeedPage.Post post) {
+        if (post.createdTime() != null) {
+            try {
+                return OffsetDateTime.parse(post.createdTime(), CREATED_TIME).toInstant();
+            } catch (DateTimeParseException e) {
+                logger.debug("Unexpected created_time {} of post {}", post.createdTime(), post.id());
+            }
+        }
+        return Instant.EPOCH;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.backend.utils;
+
+/**
+ * The result of classifying a chat message: what the user wants and, depending on the intent,
+ * the requested schedule time or the reply to send back.
+ *
+ * @param intent        The detected user intent
+ * @param scheduledTime The requested publish time formatted as 'yyyy-MM-dd HH:mm', only set for
+ *                      {@link ChatIntent#SCHEDULED_POST}
+ * @param reply         The reply text for the user, only set for {@link ChatIntent#CHAT}
+ */
+public record ChatClassification(ChatIntent intent, String scheduledTime, String reply) {
+
+    public static ChatClassification chat(String reply) {
+        return new ChatClassification(ChatIntent.CHAT, null, reply);
+    }
+
+    public static ChatClassification post() {
+        return new ChatClassification(ChatIntent.POST, null, null);
+    }
+
+    public static ChatClassification scheduledPost(String scheduledTime) {
+        return new ChatClassification(ChatIntent.SCHEDULED_POST, scheduledTime, null);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.backend.utils;
+
+/**
+ * The kinds of user intent the chat endpoint knows how to act on.
+ */
+public enum ChatIntent {
+
+    /** Plain conversation, answered with a generated reply. */
+    CHAT,
+
+    /** The user wants a Facebook post published right away. */
+    POST,
+
+    /** The user wants a Facebook post published at a later time. */
+    SCHEDULED_POST;
+
+    /**
+     * Maps the intent label used in the Gemini classification prompt to an intent.
+     *
+     * @param label The label returned by Gemini, e.g. "chat", "post" or "scheduled_post"
+     * @return The matching intent, or {@link #CHAT} if the label is unknown
+     */
+    public static ChatIntent fromLabel(String label) {
+        if (label == null) {
+            return CHAT;
+        }
+        return switch (label.trim().toLowerCase()) {
+            case "post" -> POST;
+            case "scheduled_post" -> SCHEDULED_POST;
+            default -> CHAT;
+        };
+    }
+}
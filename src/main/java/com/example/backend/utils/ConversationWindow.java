@@ -0,0 +1,221 @@
+package com.example.backend.utils;
+
+import com.example.backend.clients.GeminiClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the conversation sent to Gemini to a token budget.
+ * Conversations within the budget are sent unchanged. Longer ones keep their first turns and as many of the
+ * latest turns as fit; the turns dropped in between are replaced by a short summary, which is attached to the
+ * first kept user turn so that user and model turns keep alternating.
+ * Summaries are cached by the conversation prefix they cover. When the conversation grows, the cached summary
+ * of the previous turn is extended with the newly dropped turns only, instead of summarizing everything again.
+ */
+@Component
+public class ConversationWindow {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationWindow.class);
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+
+    @Value("${chat.window.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.window.max-tokens:8000}")
+    private int maxTokens;
+
+    @Value("${chat.window.keep-first-turns:2}")
+    private int keepFirstTurns;
+
+    @Value("${chat.window.summary-max-tokens:300}")
+    private int summaryMaxTokens;
+
+    private final GeminiClient geminiClient;
+    private final Map<Long, String> summaries;
+
+    private final AtomicLong windowed = new AtomicLong();
+    private final AtomicLong summaryCacheHits = new AtomicLong();
+    private final AtomicLong summaryCalls = new AtomicLong();
+
+    public ConversationWindow(GeminiClient geminiClient,
+                              @Value("${chat.window.summary-cache-size:1000}") int summaryCacheSize) {
+        this.geminiClient = geminiClient;
+        this.summaries = Collections.synchronizedMap(new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > summaryCacheSize;
+            }
+        });
+    }
+
+    /**
+     * Fits the conversation into the configured token budget.
+     *
+     * @param messages List of messages in Gemini API format, ending with the latest user message
+     * @return The messages unchanged if they fit, otherwise the first turns, a summary of the dropped turns and the latest turns.
+     *         If the summary cannot be generated, the dropped turns are left out without one.
+     */
+    public Mono<List<Map<String, Object>>> apply(List<Map<String, Object>> messages) {
+        if (!enabled || messages.size() <= keepFirstTurns + 1) {
+            return Mono.just(messages);
+        }
+
+        int[] tokens = new int[messages.size()];
+        int total = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            tokens[i] = TokenEstimator.estimate(messages.get(i));
+            total += tokens[i];
+        }
+        if (total <= maxTokens) {
+            return Mono.just(messages);
+        }
+
+        int headTokens = 0;
+        for (int i = 0; i < keepFirstTurns; i++) {
+            headTokens += tokens[i];
+        }
+
+        // Keep the latest turns that fit next to the first turns and the summary; the last message is always kept
+        int last = messages.size() - 1;
+        int available = maxTokens - headTokens - summaryMaxTokens - tokens[last];
+        int cut = last;
+        while (cut - 1 >= keepFirstTurns && available - tokens[cut - 1] >= 0) {
+            cut--;
+            available -= tokens[cut];
+        }
+        // The kept turns start with a user turn, which the summary is attached to
+        while (cut < last && !"user".equals(messages.get(cut).get("role"))) {
+            cut++;
+        }
+        if (cut <= keepFirstTurns) {
+            return Mono.just(messages);
+        }
+
+        windowed.incrementAndGet();
+        int keptFrom = cut;
+        return summarize(messages, keptFrom)
+                .map(summary -> withSummary(messages, keptFrom, summary))
+                .onErrorResume(e -> {
+                    logger.warn("⚠️ Could not summarize the earlier conversation, dropping it: {}", e.getMessage());
+                    List<Map<String, Object>> window = new ArrayList<>(messages.subList(0, keepFirstTurns));
+                    window.addAll(messages.subList(keptFrom, messages.size()));
+                    return Mono.just(window);
+                });
+    }
+
+    /**
+     * Summarizes the turns between the first turns and {@code end}, reusing the longest cached summary of a prefix of them.
+     */
+    private Mono<String> summarize(List<Map<String, Object>> messages, int end) {
+        long[] prefixHashes = prefixHashes(messages, end);
+
+        String cached = summaries.get(prefixHashes[end]);
+        if (cached != null) {
+            summaryCacheHits.incrementAndGet();
+            return Mono.just(cached);
+        }
+
+        int from = keepFirstTurns;
+        String previousSummary = null;
+        for (int i = end - 1; i > keepFirstTurns; i--) {
+            String summary = summaries.get(prefixHashes[i]);
+            if (summary != null) {
+                from = i;
+                previousSummary = summary;
+                break;
+            }
+        }
+
+        String prompt = createSummaryPrompt(previousSummary, messages.subList(from, end));
+        summaryCalls.incrementAndGet();
+        return geminiClient.generateContent(Map.of("contents", List.of(
+                        Map.of("role", "user", "parts", List.of(Map.of("text", prompt))))))
+                .map(response -> response.text().trim())
+                .filter(summary -> !summary.isEmpty())
+                .switchIfEmpty(Mono.error(new IllegalStateException("Empty summary")))
+                .doOnNext(summary -> summaries.put(prefixHashes[end], summary));
+    }
+
+    private String createSummaryPrompt(String previousSummary, List<Map<String, Object>> turns) {
+        int maxWords = summaryMaxTokens * 3 / 4;
+        StringBuilder prompt = new StringBuilder();
+        if (previousSummary == null) {
+            prompt.append("Summarize the following part of a conversation between a user and an assistant for a coffee business's Facebook page. ");
+        } else {
+            prompt.append("Here is a summary of the earlier part of a conversation between a user and an assistant for a coffee business's Facebook page:\n")
+                    .append(previousSummary)
+                    .append("\n\nUpdate the summary with the following turns of the conversation. ");
+        }
+        prompt.append("Keep facts, names, preferences and decisions the assistant needs to continue the conversation. ")
+                .append("Reply with the summary only, in at most ").append(maxWords).append(" words.\n");
+        for (Map<String, Object> turn : turns) {
+            prompt.append('\n')
+                    .append("model".equals(turn.get("role")) ? "Assistant: " : "User: ")
+                    .append(TokenEstimator.messageText(turn));
+        }
+        return prompt.toString();
+    }
+
+    private List<Map<String, Object>> withSummary(List<Map<String, Object>> messages, int keptFrom, String summary) {
+        List<Map<String, Object>> window = new ArrayList<>(messages.subList(0, keepFirstTurns));
+
+        Map<String, Object> firstKept = new HashMap<>(messages.get(keptFrom));
+        List<Object> parts = new ArrayList<>();
+        parts.add(Map.of("text", SUMMARY_PREFIX + summary));
+        if (firstKept.get("parts") instanceof List<?> originalParts) {
+            parts.addAll(originalParts);
+        }
+        firstKept.put("parts", parts);
+
+        window.add(firstKept);
+        window.addAll(messages.subList(keptFrom + 1, messages.size()));
+        return window;
+    }
+
+    /**
+     * Rolling 64-bit hashes of the roles and texts of the conversation, where element i covers messages 0 to i - 1.
+     */
+    private static long[] prefixHashes(List<Map<String, Object>> messages, int end) {
+        long[] hashes = new long[end + 1];
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < end; i++) {
+            Map<String, Object> message = messages.get(i);
+            hash = mix(hash, String.valueOf(message.get("role")));
+            hash = mix(hash, TokenEstimator.messageText(message));
+            hashes[i + 1] = hash;
+        }
+        return hashes;
+    }
+
+    private static long mix(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        // Separator, so that ("ab", "c") and ("a", "bc") hash differently
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    public long getWindowedCount() {
+        return windowed.get();
+    }
+
+    public long getSummaryCacheHitCount() {
+        return summaryCacheHits.get();
+    }
+
+    public long getSummaryCallCount() {
+        return summaryCalls.get();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.backend.utils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The point in time by which a request must be answered.
+ * The controller sets it with {@link #enforce(Mono, Duration)} when a request comes in; it then travels with the
+ * request's reactive pipeline in the Reactor context, through the services down to every outbound call, which
+ * limits itself to the remaining budget with {@link #bound(Mono, Duration)}. Once the deadline passes, the whole
+ * pipeline is cancelled and fails with a {@link DeadlineExceededException}.
+ *
+ * @param expiresAtNanos The {@link System#nanoTime()} value at which the deadline passes
+ */
+public record Deadline(long expiresAtNanos) {
+
+    private static final Class<Deadline> CONTEXT_KEY = Deadline.class;
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public Duration remaining() {
+        long nanos = expiresAtNanos - System.nanoTime();
+        return nanos > 0 ? Duration.ofNanos(nanos) : Duration.ZERO;
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return The deadline of the request a reactive pipeline belongs to, if it has one
+     */
+    public static Optional<Deadline> current(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    /**
+     * Sets a deadline for all work done by the given pipeline and abandons the work once it passes.
+     * An earlier deadline that is already set by a caller is kept.
+     *
+     * @param work   The pipeline to bound
+     * @param budget The time the pipeline may take
+     * @return The pipeline, failing with a {@link DeadlineExceededException} if it does not finish in time
+     */
+    public static <T> Mono<T> enforce(Mono<T> work, Duration budget) {
+        return Mono.deferContextual(context -> {
+            Deadline deadline = earliest(context, budget);
+            return work
+                    .timeout(deadline.remaining(), Mono.error(() -> new DeadlineExceededException(budget)))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, deadline));
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #enforce(Mono, Duration)}; the budget covers the whole stream, not each element.
+     */
+    public static <T> Flux<T> enforce(Flux<T> work, Duration budget) {
+        return Flux.deferContextual(context -> {
+            Deadline deadline = earliest(context, budget);
+            AtomicBoolean expired = new AtomicBoolean();
+            return work
+                    .takeUntilOther(Mono.delay(deadline.remaining()).doOnNext(tick -> expired.set(true)))
+                    .concatWith(Mono.defer(() -> expired.get() ? Mono.error(new DeadlineExceededException(budget)) : Mono.empty()))
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, deadline));
+        });
+    }
+
+    /**
+     * Bounds one outbound call by the remaining budget of the current request, or by the given timeout if that is
+     * shorter or the call is not part of a request with a deadline. A call is not started once the deadline has passed.
+     *
+     * @param call    The outbound call
+     * @param timeout The longest the call may take on its own
+     * @return The call, failing with a TimeoutException if it exceeds its own timeout, or with a
+     *         {@link DeadlineExceededException} if the request runs out of time first. Only the former says anything
+     *         about the dependency, so retries, rate limiting and circuit breakers ignore the latter.
+     */
+    public static <T> Mono<T> bound(Mono<T> call, Duration timeout) {
+        return Mono.deferContextual(context -> {
+            Optional<Deadline> deadline = current(context);
+            if (deadline.isEmpty()) {
+                return call.timeout(timeout);
+            }
+            if (deadline.get().isExpired()) {
+                return Mono.error(new DeadlineExceededException(Duration.ZERO));
+            }
+            Duration remaining = deadline.get().remaining();
+            if (remaining.compareTo(timeout) < 0) {
+                return call.timeout(remaining, Mono.error(() -> new DeadlineExceededException(Duration.ZERO)));
+            }
+            return call.timeout(timeout);
+        });
+    }
+
+    private static Deadline earliest(ContextView context, Duration budget) {
+        Deadline deadline = after(budget);
+        return current(context)
+                .filter(outer -> outer.expiresAtNanos() - deadline.expiresAtNanos() < 0)
+                .orElse(deadline);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.backend.utils;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request's {@link Deadline} passes before its work is done.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(Duration budget) {
+        super(budget.isZero() ? "Request deadline has passed" : "Request did not finish within " + budget.toMillis() + " ms");
+    }
+}
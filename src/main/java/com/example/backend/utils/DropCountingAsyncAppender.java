@@ -0,0 +1,76 @@
+package com.example.backend.utils;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AsyncAppenderBase;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logback async appender that counts the events it drops instead of blocking the logging thread.
+ * Events are handed to a worker thread through a bounded array queue; with {@code neverBlock} set, an event is
+ * dropped when the queue is full, and INFO and lower events are already dropped once it is nearly full
+ * (below the discarding threshold). The count is published as the logging.events.dropped metric.
+ * Logback ignores whether a never-blocking offer succeeded, so this appender makes the offer itself; if the queue
+ * cannot be reached, e.g. in another Logback version, it falls back to Logback's offer and only counts discards.
+ */
+public class DropCountingAsyncAppender extends AsyncAppender {
+
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private BlockingQueue<ILoggingEvent> queue;
+
+    @Override
+    public void start() {
+        super.start();
+        if (isStarted()) {
+            queue = findQueue();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private BlockingQueue<ILoggingEvent> findQueue() {
+        try {
+            Field field = AsyncAppenderBase.class.getDeclaredField("blockingQueue");
+            field.setAccessible(true);
+            return (BlockingQueue<ILoggingEvent>) field.get(this);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            addWarn("Cannot reach the queue of the async appender, events dropped on a full queue are not counted", e);
+            return null;
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (queue == null || !isNeverBlock()) {
+            super.append(event);
+            return;
+        }
+        // Same steps as AsyncAppenderBase.append, but the result of the offer is checked
+        if (isQueueBelowDiscardingThreshold() && isDiscardable(event)) {
+            return;
+        }
+        preprocess(event);
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Only asked once the queue is below the discarding threshold, so a discardable event is dropped.
+     */
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        boolean discardable = super.isDiscardable(event);
+        if (discardable) {
+            dropped.incrementAndGet();
+        }
+        return discardable;
+    }
+
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+}
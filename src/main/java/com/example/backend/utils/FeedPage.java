@@ -0,0 +1,21 @@
+package com.example.backend.utils;
+
+import java.util.List;
+
+/**
+ * One page of a Graph API page feed, requested with fields=message,created_time (the id is always returned).
+ *
+ * @param posts     The posts on this page that have a message, in feed order (newest first)
+ * @param postCount The number of posts on this page, including those without a message
+ * @param next      The paging.next URL of the following page, or null if this is the last page
+ */
+public record FeedPage(List<Post> posts, int postCount, String next) {
+
+    /**
+     * @param id          The post id, e.g. 1234567890_9876543210, or null if absent
+     * @param message     The text of the post
+     * @param createdTime The created_time of the post as sent by the Graph API, e.g. 2024-05-01T08:30:00+0000, or null if absent
+     */
+    public record Post(String id, String message, String createdTime) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.backend.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for Graph API feed pages.
+ * Walks the JSON tokens once and keeps only data[*].id, .message, .created_time and paging.next; posts without
+ * a message are skipped, and so is every other field, without building a JSON tree or copying the body into a String.
+ */
+public final class FeedPageParser {
+
+    private FeedPageParser() {
+    }
+
+    /**
+     * Parses a feed page.
+     *
+     * @param reader The response body; not closed by this method
+     * @return The posts with a message, the number of all posts and the link to the next page
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static FeedPage parse(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        List<FeedPage.Post> posts = new ArrayList<>();
+        String next = null;
+        int postCount = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "data" -> postCount = readPosts(json, posts);
+                case "paging" -> next = readNext(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return new FeedPage(posts, postCount, next);
+    }
+
+    /**
+     * Adds the posts that have a message to the list.
+     *
+     * @return The number of posts in the data array, with or without a message
+     */
+    private static int readPosts(JsonReader json, List<FeedPage.Post> posts) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return 0;
+        }
+        int count = 0;
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            count++;
+            String id = null;
+            String message = null;
+            String createdTime = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "id" -> id = readString(json);
+                    case "message" -> message = readString(json);
+                    case "created_time" -> createdTime = readString(json);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+            if (message != null) {
+                posts.add(new FeedPage.Post(id, message, createdTime));
+            }
+        }
+        json.endArray();
+        return count;
+    }
+
+    private static String readNext(JsonReader json) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return null;
+        }
+        String next = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("next")) {
+                next = readString(json);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return next;
+    }
+
+    /**
+     * @return The string value, or null if the value is not a string, e.g. null or an object
+     */
+    private static String readString(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.STRING) {
+            return json.nextString();
+        }
+        json.skipValue();
+        return null;
+    }
+}
@@ -1,27 +1,70 @@
 package com.example.backend.utils;
 
+import com.example.backend.clients.DependencyUnavailableException;
+import com.example.backend.clients.GeminiClient;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This service is responsible for interacting with the Gemini AI API to generate
  * AI-based content and creating structured prompts/messages necessary for communication with the API.
+ * Calls are non-blocking and return Mono/Flux; the blocking variants are kept for callers that
+ * run on their own thread, such as scheduled tasks. Each call is traced as a span with {@link TraceSpans}.
  */
 @Service
 public class GeminiAiService {
 
-    @Value("${geminiai.api.key}")
-    private String geminiApiKey;
+    private static final Logger logger = LoggerFactory.getLogger(GeminiAiService.class);
+
+    private static final DateTimeFormatter SCHEDULE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Value("${chat.intent.parallel.enabled:false}")
+    private boolean parallelIntentDetection;
+
+    @Value("${chat.intent.parallel.deadline:15s}")
+    private Duration parallelDeadline;
 
-    private final RestTemplate restTemplate = new RestTemplate();
     private final Gson gson = new Gson();
+    private final GeminiClient geminiClient;
+    private final IntentClassifier intentClassifier;
+    private final StreamingMetrics streamingMetrics;
+    private final ConversationWindow conversationWindow;
+    private final GeminiResponseCache responseCache;
+    private final SingleFlight<GeminiResponse> generateFlights;
+    private final TraceSpans traceSpans;
+
+    public GeminiAiService(GeminiClient geminiClient, IntentClassifier intentClassifier, StreamingMetrics streamingMetrics,
+                           ConversationWindow conversationWindow, GeminiResponseCache responseCache, MeterRegistry meterRegistry,
+                           TraceSpans traceSpans) {
+        this.geminiClient = geminiClient;
+        this.intentClassifier = intentClassifier;
+        this.streamingMetrics = streamingMetrics;
+        this.conversationWindow = conversationWindow;
+        this.responseCache = responseCache;
+        this.traceSpans = traceSpans;
+        this.generateFlights = new SingleFlight<>("gemini.generate", meterRegistry);
+    }
 
     /**
      * Calls the Gemini API to generate text based on provided messages
@@ -30,52 +73,249 @@ public class GeminiAiService {
      * @return Generated text from Gemini API
      */
     public String generateText(List<Map<String, Object>> messages) {
+        return generateTextOrFallback(messages).block();
+    }
+
+    /**
+     * Calls the Gemini API to generate text based on provided messages, without blocking the calling thread.
+     * Long conversations are first fitted into the token budget by the {@link ConversationWindow}.
+     * Identical requests that are in flight at the same time, e.g. from a double submit, share one Gemini call.
+     *
+     * @param messages List of messages in Gemini API format
+     * @return Generated text from Gemini API, or an error signal if the call failed
+     */
+    public Mono<String> generateTextAsync(List<Map<String, Object>> messages) {
+        return traceSpans.span("GeminiAiService.generateText", conversationWindow.apply(messages)
+                .flatMap(window -> {
+                    Map<String, Object> body = Map.of("contents", window);
+                    return generateFlights.execute(PromptHash.of(gson.toJson(body)), () -> geminiClient.generateContent(body));
+                })
+                .map(this::responseText));
+    }
+
+    /**
+     * Generates the reply to a single-message prompt whose answer only depends on the prompt text.
+     * Replies are served from the {@link GeminiResponseCache} when caching is enabled for the call site;
+     * failed calls and empty replies, e.g. from a response without candidates, are not cached.
+     * The separate intent prompts go through here: in the chat flow they confirm the local classifier's confident
+     * post guesses, and with {@code chat.intent.parallel.enabled} they resolve ambiguous messages. The single
+     * classification call carries the whole conversation and the current time, and is never cached.
+     *
+     * @param site   The call site, used for the cache key and the per-site switch
+     * @param prompt The prompt text
+     * @return Generated text from Gemini API, or an error signal if the call failed
+     */
+    private Mono<String> generateCacheableText(String site, String prompt) {
+        if (!responseCache.isEnabled(site)) {
+            return generateTextAsync(createSingleUserMessage(prompt));
+        }
+        return Mono.defer(() -> {
+            String cached = responseCache.get(site, prompt);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return generateTextAsync(createSingleUserMessage(prompt))
+                    .doOnNext(text -> {
+                        if (!text.isBlank()) {
+                            responseCache.put(site, prompt, text);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Same as {@link #generateTextAsync(List)}, but a failed call results in the text "Unexpected error.".
+     * A {@link DependencyUnavailableException} or {@link DeadlineExceededException} is passed on, so callers can
+     * fail fast while Gemini is unavailable or the request is out of time.
+     */
+    private Mono<String> generateTextOrFallback(List<Map<String, Object>> messages) {
+        return generateTextAsync(messages)
+                .onErrorResume(e -> !(e instanceof DependencyUnavailableException || e instanceof DeadlineExceededException), e -> {
+                    logger.error("🚨 Unexpected error in generateText function: {}", e.getMessage());
+                    return Mono.just("Unexpected error.");
+                });
+    }
+
+    private String responseText(GeminiResponse response) {
+        if (!response.hasCandidates()) {
+            logger.warn("⚠️ No 'candidates' found in Gemini response.");
+        } else if (response.text().isEmpty()) {
+            logger.warn("⚠️ No text found in the first Gemini candidate.");
+        }
+        return response.text();
+    }
+
+    /**
+     * Calls Gemini's streamGenerateContent endpoint and emits each text chunk as soon as it arrives.
+     * Chunks are only requested from Gemini as fast as the subscriber consumes them, and cancelling
+     * the subscription aborts the upstream call. Long conversations are first fitted into the token budget.
+     *
+     * @param messages List of messages in Gemini API format
+     * @return The generated text, chunk by chunk
+     */
+    public Flux<String> streamText(List<Map<String, Object>> messages) {
+        return traceSpans.span("GeminiAiService.streamText", Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean firstToken = new AtomicBoolean(true);
+            streamingMetrics.streamStarted();
+
+            return conversationWindow.apply(messages)
+                    .flatMapMany(window -> geminiClient.streamGenerateContent(Map.of("contents", window)))
+                    .map(GeminiAiService::chunkText)
+                    .filter(text -> !text.isEmpty())
+                    .doOnNext(text -> {
+                        if (firstToken.compareAndSet(true, false)) {
+                            streamingMetrics.firstToken(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnComplete(streamingMetrics::streamCompleted)
+                    .doOnCancel(streamingMetrics::streamCancelled)
+                    .doOnError(e -> streamingMetrics.streamFailed());
+        }));
+    }
+
+    /**
+     * Extracts the text of one streamed response chunk; each chunk has the same shape as a full response.
+     */
+    private static String chunkText(String data) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-goog-api-key", geminiApiKey);
+            return GeminiResponseParser.parse(new StringReader(data)).text();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not parse Gemini stream chunk", e);
+        }
+    }
 
-            Map<String, Object> content = Map.of("contents", messages);
-            HttpEntity<String> request = new HttpEntity<>(gson.toJson(content), headers);
+    /**
+     * Classifies the latest user message and answers it.
+     * The local {@link IntentClassifier} is asked first; when it is confident the message is plain chat, only the
+     * reply is generated. A post or scheduled post is never decided locally, as publishing cannot be undone: a
+     * confident post guess is confirmed with the separate intent prompt, which only depends on the message and is
+     * served from the {@link GeminiResponseCache} when the same request comes again. For any message the classifier
+     * is unsure about, the conversation is sent together
+     * with an instruction asking Gemini to reply with one JSON object holding the intent, the requested schedule
+     * time and the chat reply, so intent detection and reply generation share a single round trip.
+     * With {@code chat.intent.parallel.enabled} set, ambiguous messages are instead resolved with the separate
+     * intent and reply prompts running in parallel, for models that do not follow the JSON instruction reliably.
+     *
+     * @param messages List of messages in Gemini API format, ending with the user message to classify
+     * @param userText The text of the last user message
+     * @return The classification; if Gemini does not answer with valid JSON, its raw text is treated as a chat reply.
+     *         Fails with a TimeoutException if parallel intent detection misses its deadline.
+     */
+    public Mono<ChatClassification> classifyAndRespond(List<Map<String, Object>> messages, String userText) {
+        return traceSpans.span("GeminiAiService.classifyAndRespond", Mono.defer(() -> classify(messages, userText)));
+    }
 
-            String url = "https://generativelanguage.googleapis.com/v1/models/gemini-1.5-flash:generateContent";
-            ResponseEntity<String> response = restTemplate.postForEntity(url, request, String.class);
+    private Mono<ChatClassification> classify(List<Map<String, Object>> messages, String userText) {
+        IntentClassifier.Prediction local = intentClassifier.classify(userText);
+        if (local.confident() && local.intent() == ChatIntent.CHAT) {
+            return generateTextOrFallback(messages).map(ChatClassification::chat);
+        }
+        if (local.confident()) {
+            return confirmLocalGuess(messages, userText, local);
+        }
 
-            Map<String, Object> responseData = gson.fromJson(response.getBody(), Map.class);
-            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseData.get("candidates");
-            if (candidates == null || candidates.isEmpty()) {
-                System.err.println("⚠️ Warning: No 'candidates' found in Gemini response.");
-                return "";
-            }
+        if (parallelIntentDetection) {
+            return classifySpeculatively(messages, userText, local);
+        }
 
-            Map<String, Object> contentMap = (Map<String, Object>) candidates.get(0).get("content");
-            if (contentMap == null) {
-                System.err.println("⚠️ Warning: No 'content' field found in Gemini response.");
-                return "";
-            }
+        return generateTextOrFallback(withClassificationInstruction(messages))
+                .map(this::parseClassification)
+                .doOnNext(classification -> recordLlmResult(local, classification.intent()));
+    }
 
-            List<Map<String, String>> partsList = (List<Map<String, String>>) contentMap.get("parts");
-            if (partsList == null || partsList.isEmpty()) {
-                System.err.println("⚠️ Warning: No 'parts' found in Gemini response.");
-                return "";
-            }
+    /**
+     * Asks Gemini to confirm a confident local post or scheduled post guess with the matching intent prompt.
+     * A confirmed scheduled post keeps the time the classifier parsed, which does not go stale in the cache the way
+     * Gemini's answer for a relative time such as "tomorrow" does. If Gemini does not confirm the guess, the message
+     * is answered as chat.
+     */
+    private Mono<ChatClassification> confirmLocalGuess(List<Map<String, Object>> messages, String userText,
+                                                       IntentClassifier.Prediction local) {
+        Mono<ChatClassification> confirmed;
+        if (local.intent() == ChatIntent.SCHEDULED_POST) {
+            AtomicReference<String> dateRef = new AtomicReference<>();
+            confirmed = askScheduledPostIntent(userText, null, dateRef)
+                    .filter(Boolean::booleanValue)
+                    .map(isScheduled -> ChatClassification.scheduledPost(
+                            local.scheduledTime() != null ? local.scheduledTime() : dateRef.get()));
+        } else {
+            confirmed = askPostIntent(userText, null)
+                    .filter(Boolean::booleanValue)
+                    .map(isPost -> ChatClassification.post());
+        }
+        return confirmed
+                .switchIfEmpty(Mono.defer(() -> generateTextOrFallback(messages).map(ChatClassification::chat)))
+                .doOnNext(classification -> recordLlmResult(local, classification.intent()));
+    }
+
+    /**
+     * Attaches the classification instruction to the last user message, so the conversation keeps
+     * alternating between user and model turns.
+     */
+    private List<Map<String, Object>> withClassificationInstruction(List<Map<String, Object>> messages) {
+        Map<String, Object> instructionPart = Map.of("text", createClassificationInstruction());
+        List<Map<String, Object>> contents = new ArrayList<>(messages);
 
-            return partsList.get(0).getOrDefault("text", "");
+        int last = contents.size() - 1;
+        if (last >= 0 && "user".equals(contents.get(last).get("role"))
+                && contents.get(last).get("parts") instanceof List<?> parts) {
+            List<Object> extendedParts = new ArrayList<>(parts);
+            extendedParts.add(instructionPart);
 
-        } catch (Exception e) {
-            System.err.println("🚨 Unexpected error in generateText function: " + e.getMessage());
-            return "Unexpected error.";
+            Map<String, Object> lastMessage = new HashMap<>(contents.get(last));
+            lastMessage.put("parts", extendedParts);
+            contents.set(last, lastMessage);
+        } else {
+            contents.add(Map.of("role", "user", "parts", List.of(instructionPart)));
         }
+        return contents;
     }
 
+    private String createClassificationInstruction() {
+        return "Decide what the user wants with their latest message and answer it. " +
+                "Reply with a single JSON object only, without markdown, using exactly these keys:\n" +
+                "\"intent\": \"post\" if the user wants to publish a Facebook post now, " +
+                "\"scheduled_post\" if they want a Facebook post published at a later time, otherwise \"chat\";\n" +
+                "\"scheduledTime\": for \"scheduled_post\" the requested time formatted as 'yyyy-MM-dd HH:mm', otherwise null;\n" +
+                "\"reply\": for \"chat\" your reply to the user's message, otherwise null.\n" +
+                "The current date and time is " + LocalDateTime.now().format(SCHEDULE_FORMAT) + ".";
+    }
+
+    private ChatClassification parseClassification(String response) {
+        String text = response.trim();
+        int start = text.indexOf('{');
+        int end = text.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            logger.warn("⚠️ Gemini classification is not JSON, using it as a chat reply.");
+            return ChatClassification.chat(text);
+        }
+
+        try {
+            JsonObject json = gson.fromJson(text.substring(start, end + 1), JsonObject.class);
+            ChatIntent intent = ChatIntent.fromLabel(stringOrNull(json.get("intent")));
+            return new ChatClassification(intent, stringOrNull(json.get("scheduledTime")), stringOrNull(json.get("reply")));
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Could not parse Gemini classification: {}", e.getMessage());
+            return ChatClassification.chat(text);
+        }
+    }
+
+    private static String stringOrNull(JsonElement element) {
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
 
     /**
      * Creates a prompt for generating a unique Facebook post
      *
-     * @param existingMessages List of existing Facebook post messages
+     * @param existingMessages Existing Facebook post messages the new post should differ from, e.g. the newest ones
      * @return A prompt to send to Gemini AI
      */
     public String createUniquePostPrompt(List<String> existingMessages) {
+        return uniquePostPrompt(existingMessages);
+    }
+
+    static String uniquePostPrompt(List<String> existingMessages) {
         return "Give me a clear, short sentence to post on a Facebook page for a coffee business that is different from these existing sentences: \"" +
                 String.join("\", \"", existingMessages) + "\"";
     }
@@ -96,58 +336,158 @@ public class GeminiAiService {
     }
 
     /**
-     * Uses Gemini AI to determine whether the given message expresses an intent to post.
+     * Determines whether the given message expresses an intent to post.
+     * Messages the local {@link IntentClassifier} confidently classifies as chat are not sent to Gemini;
+     * every other message, including a local post guess, is confirmed by Gemini.
+     * Callers that also check {@link #isScheduledPostIntent} classify the message once and pass the same prediction
+     * to both, and record the intent they settle on with {@link IntentClassifier#recordLlmResult}, so every message
+     * is counted once.
      *
      * @param message The input message
+     * @param local   The prediction of {@link IntentClassifier#classify(String)} for the message
      * @return true if Gemini determines it intends to post, false otherwise
      */
-    public boolean isPostIntent(String message) {
-        try {
-            String prompt = "Does the following message indicate that the user wants to create post on Facebook? " +
-                    "Reply with only 'true' or 'false'.\n\nMessage: \"" + message + "\"";
-
-            List<Map<String, Object>> aiMessage = createSingleUserMessage(prompt);
-            String response = generateText(aiMessage);
-
-            // Normalize and evaluate the response
-            String result = response.trim().toLowerCase();
-            return result.equals("true");
-        } catch (Exception e) {
-            System.err.println("⚠️ Error while checking post intent with AI: " + e.getMessage());
+    public boolean isPostIntent(String message, IntentClassifier.Prediction local) {
+        if (local.confident() && local.intent() == ChatIntent.CHAT) {
             return false;
         }
+
+        return Boolean.TRUE.equals(askPostIntent(message, null).block());
+    }
+
+    private Mono<Boolean> askPostIntent(String message, IntentClassifier.Prediction local) {
+        String prompt = "Does the following message indicate that the user wants to create post on Facebook? " +
+                "Reply with only 'true' or 'false'.\n\nMessage: \"" + message + "\"";
+
+        return generateCacheableText("post-intent", prompt)
+                .map(response -> {
+                    // Normalize and evaluate the response
+                    String result = response.trim().toLowerCase();
+                    boolean postIntent = result.equals("true");
+                    recordLlmResult(local, postIntent ? ChatIntent.POST : ChatIntent.CHAT);
+                    return postIntent;
+                })
+                .onErrorResume(e -> {
+                    logger.warn("⚠️ Error while checking post intent with AI: {}", e.getMessage());
+                    return Mono.just(false);
+                });
     }
 
     /**
      * Determines if the given message indicates a scheduled Facebook post intent.
+     * Messages the local {@link IntentClassifier} confidently classifies as chat are not sent to Gemini;
+     * every other message, including a local scheduled post guess, is confirmed by Gemini.
      * If the message is identified as a scheduling intent, the scheduled date is stored in the provided reference.
+     * As with {@link #isPostIntent}, the caller classifies the message and records the outcome.
      *
      * @param message The content of the message to be analyzed for scheduling intent.
+     * @param local   The prediction of {@link IntentClassifier#classify(String)} for the message
      * @param scheduledDateHolder A reference to hold the scheduled date if the message indicates a scheduling intent.
      *                             The date will be formatted as 'yyyy-MM-dd HH:mm'.
      * @return true if the message indicates a scheduled post intent, false otherwise.
      */
-    public boolean isScheduledPostIntent(String message, AtomicReference<String> scheduledDateHolder) {
-        try {
-            String prompt = "Does the following message indicate that the user wants to schedule a Facebook post? " +
-                    "If yes, reply only with the scheduled date (e.g., '2025-07-03 14:00'). If not, reply only with 'false'.\n\nMessage: \"" + message + "\"";
+    public boolean isScheduledPostIntent(String message, IntentClassifier.Prediction local, AtomicReference<String> scheduledDateHolder) {
+        if (local.confident() && local.intent() == ChatIntent.CHAT) {
+            return false;
+        }
 
-            List<Map<String, Object>> aiMessage = createSingleUserMessage(prompt);
-            String response = generateText(aiMessage);
+        return Boolean.TRUE.equals(askScheduledPostIntent(message, null, scheduledDateHolder).block());
+    }
 
-            String result = response.trim();
-            if (result.equalsIgnoreCase("false")) {
-                return false;
-            }
+    private Mono<Boolean> askScheduledPostIntent(String message, IntentClassifier.Prediction local, AtomicReference<String> scheduledDateHolder) {
+        String prompt = "Does the following message indicate that the user wants to schedule a Facebook post? " +
+                "If yes, reply only with the scheduled date (e.g., '2025-07-03 14:00'). If not, reply only with 'false'.\n\nMessage: \"" + message + "\"";
 
-            // Save the date into the reference
-            scheduledDateHolder.set(result);
-            return true;
-        } catch (Exception e) {
-            System.err.println("⚠️ Error while checking scheduled post intent with AI: " + e.getMessage());
-            return false;
-        }
+        return generateCacheableText("scheduled-intent", prompt)
+                .map(response -> {
+                    String result = response.trim();
+                    if (result.equalsIgnoreCase("false")) {
+                        recordLlmResult(local, ChatIntent.CHAT);
+                        return false;
+                    }
+                    recordLlmResult(local, ChatIntent.SCHEDULED_POST);
+
+                    // Save the date into the reference
+                    scheduledDateHolder.set(result);
+                    return true;
+                })
+                .onErrorResume(e -> {
+                    logger.warn("⚠️ Error while checking scheduled post intent with AI: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Resolves the intent and reply with the separate schedule, post and reply prompts, all sent at the same time
+     * instead of one after another. The schedule check takes precedence over the post check, as in the sequential
+     * flow; as soon as either of them wins, the remaining calls are cancelled. All calls share one overall deadline.
+     * The calls are subscribed within this pipeline, so they carry the caller's request deadline, trace and stage
+     * tags; how many of them run at once is bounded by the Gemini limiter and bulkhead like any other Gemini call.
+     */
+    private Mono<ChatClassification> classifySpeculatively(List<Map<String, Object>> messages, String userText,
+                                                           IntentClassifier.Prediction local) {
+        return Mono.defer(() -> {
+            AtomicReference<String> dateRef = new AtomicReference<>();
+            SpeculativeOutcome outcome = new SpeculativeOutcome();
+
+            // The branches do not record agreement themselves, only the winning intent is compared below.
+            // A failed reply only fails the classification if neither intent check wins.
+            return Flux.mergeDelayError(1,
+                            askScheduledPostIntent(userText, null, dateRef).map(isScheduled -> {
+                                outcome.scheduled = isScheduled;
+                                return outcome;
+                            }),
+                            askPostIntent(userText, null).map(isPost -> {
+                                outcome.post = isPost;
+                                return outcome;
+                            }),
+                            generateTextOrFallback(messages).map(text -> {
+                                outcome.reply = text;
+                                return outcome;
+                            }))
+                    .<ChatClassification>handle((current, sink) -> {
+                        ChatClassification decided = current.decide(dateRef.get());
+                        if (decided != null) {
+                            recordLlmResult(local, decided.intent());
+                            sink.next(decided);
+                        }
+                    })
+                    // Taking the first decision cancels whatever is still in flight
+                    .next()
+                    .timeout(parallelDeadline)
+                    .doOnError(e -> logger.warn("⚠️ Intent detection failed: {}", e.getMessage()));
+        });
     }
 
+    /**
+     * The results of the speculative calls that have arrived so far.
+     */
+    private static final class SpeculativeOutcome {
+
+        private volatile Boolean scheduled;
+        private volatile Boolean post;
+        private volatile String reply;
+
+        /**
+         * @return The classification once the results that have arrived decide it, otherwise null
+         */
+        ChatClassification decide(String scheduledTime) {
+            if (Boolean.TRUE.equals(scheduled)) {
+                return ChatClassification.scheduledPost(scheduledTime);
+            }
+            if (Boolean.FALSE.equals(scheduled) && Boolean.TRUE.equals(post)) {
+                return ChatClassification.post();
+            }
+            if (Boolean.FALSE.equals(scheduled) && Boolean.FALSE.equals(post) && reply != null) {
+                return ChatClassification.chat(reply);
+            }
+            return null;
+        }
+    }
 
-}
\ No newline at end of file
+    private void recordLlmResult(IntentClassifier.Prediction local, ChatIntent llmIntent) {
+        if (local != null) {
+            intentClassifier.recordLlmResult(local, llmIntent);
+        }
+    }
+}
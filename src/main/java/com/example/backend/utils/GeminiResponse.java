@@ -0,0 +1,14 @@
+package com.example.backend.utils;
+
+/**
+ * The parts of a Gemini generateContent response the backend uses.
+ *
+ * @param text                 The text of all parts of the first candidate, joined
+ * @param hasCandidates        Whether the response contained at least one candidate
+ * @param promptTokenCount     Tokens in the prompt, or 0 if the response has no usage metadata
+ * @param candidatesTokenCount Tokens in the generated candidates, or 0 if unknown
+ * @param totalTokenCount      Total tokens billed for the call, or 0 if unknown
+ */
+public record GeminiResponse(String text, boolean hasCandidates, int promptTokenCount, int candidatesTokenCount,
+                             int totalTokenCount) {
+}
@@ -0,0 +1,120 @@
+package com.example.backend.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded cache for the replies to deterministic Gemini prompts, such as the intent checks, whose answer only
+ * depends on the prompt text. Entries are keyed by the call site and a hash of the normalized prompt, expire after
+ * a time to live and are evicted least recently used first once the cache is full.
+ * In the chat flow, the intent checks confirm the local classifier's confident post guesses, so a repeated
+ * "post this on my page" costs no Gemini call; with {@code chat.intent.parallel.enabled} they also resolve
+ * ambiguous messages.
+ * Each call site can be switched off and given its own time to live with
+ * {@code gemini.cache.<site>.enabled} and {@code gemini.cache.<site>.ttl}.
+ * Hits, misses and evictions are published as the gemini.cache.* metrics.
+ */
+@Component
+public class GeminiResponseCache {
+
+    private final Environment environment;
+    private final boolean enabled;
+    private final Duration defaultTtl;
+    private final int maxEntries;
+
+    // Access-ordered, guarded by its own monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final MeterRegistry meterRegistry;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    public GeminiResponseCache(Environment environment, MeterRegistry meterRegistry,
+                               @Value("${gemini.cache.enabled:true}") boolean enabled,
+                               @Value("${gemini.cache.ttl:10m}") Duration defaultTtl,
+                               @Value("${gemini.cache.max-entries:10000}") int maxEntries) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultTtl = defaultTtl;
+        this.maxEntries = maxEntries;
+
+        this.sizeEvictions = meterRegistry.counter("gemini.cache.evictions", "cause", "size");
+        this.expiredEvictions = meterRegistry.counter("gemini.cache.evictions", "cause", "expired");
+        Gauge.builder("gemini.cache.size", this, GeminiResponseCache::size).register(meterRegistry);
+    }
+
+    private record Entry(String value, long expiresAtNanos) {
+    }
+
+    /**
+     * @param site The call site, e.g. "post-intent"
+     * @return Whether replies for this call site are cached
+     */
+    public boolean isEnabled(String site) {
+        return enabled && environment.getProperty("gemini.cache." + site + ".enabled", Boolean.class, true);
+    }
+
+    /**
+     * Looks up the cached reply to a prompt.
+     *
+     * @return The reply, or null if it is not cached or has expired
+     */
+    public String get(String site, String prompt) {
+        String key = key(site, prompt);
+        String value = null;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAtNanos() - System.nanoTime() > 0) {
+                    value = entry.value();
+                } else {
+                    entries.remove(key);
+                    expiredEvictions.increment();
+                }
+            }
+        }
+        meterRegistry.counter("gemini.cache.requests", "site", site, "result", value != null ? "hit" : "miss").increment();
+        return value;
+    }
+
+    public void put(String site, String prompt, String value) {
+        long expiresAt = System.nanoTime() + environment.getProperty("gemini.cache." + site + ".ttl", Duration.class, defaultTtl).toNanos();
+        synchronized (entries) {
+            entries.put(key(site, prompt), new Entry(value, expiresAt));
+            var eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                Map.Entry<String, Entry> entry = eldest.next();
+                eldest.remove();
+                if (entry.getValue().expiresAtNanos() - System.nanoTime() > 0) {
+                    sizeEvictions.increment();
+                } else {
+                    expiredEvictions.increment();
+                }
+            }
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Builds the key from the call site and a hash of the prompt, ignoring case and differences in whitespace.
+     */
+    private static String key(String site, String prompt) {
+        String normalized = prompt.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return site + ":" + PromptHash.of(normalized);
+    }
+}
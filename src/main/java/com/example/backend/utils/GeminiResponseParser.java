@@ -0,0 +1,126 @@
+package com.example.backend.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming parser for Gemini generateContent responses.
+ * Instead of deserializing the whole response into nested maps, it walks the JSON tokens once and keeps only
+ * candidates[0].content.parts[*].text and the usageMetadata token counts. Everything else, such as safety
+ * ratings, citation metadata and further candidates, is skipped without being materialized.
+ */
+public final class GeminiResponseParser {
+
+    private GeminiResponseParser() {
+    }
+
+    /**
+     * Parses a Gemini response.
+     *
+     * @param reader The response body; not closed by this method
+     * @return The extracted text and token counts
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static GeminiResponse parse(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        StringBuilder text = new StringBuilder();
+        boolean hasCandidates = false;
+        int[] usage = new int[3];
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "candidates" -> hasCandidates = readCandidates(json, text);
+                case "usageMetadata" -> readUsage(json, usage);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return new GeminiResponse(text.toString(), hasCandidates, usage[0], usage[1], usage[2]);
+    }
+
+    private static boolean readCandidates(JsonReader json, StringBuilder text) throws IOException {
+        if (skipNull(json)) {
+            return false;
+        }
+        boolean hasCandidates = false;
+        json.beginArray();
+        if (json.hasNext()) {
+            hasCandidates = true;
+            readObjectField(json, "content", () -> readContent(json, text));
+        }
+        while (json.hasNext()) {
+            json.skipValue();
+        }
+        json.endArray();
+        return hasCandidates;
+    }
+
+    private static void readContent(JsonReader json, StringBuilder text) throws IOException {
+        readObjectField(json, "parts", () -> {
+            if (skipNull(json)) {
+                return;
+            }
+            json.beginArray();
+            while (json.hasNext()) {
+                readObjectField(json, "text", () -> {
+                    if (!skipNull(json)) {
+                        text.append(json.nextString());
+                    }
+                });
+            }
+            json.endArray();
+        });
+    }
+
+    private static void readUsage(JsonReader json, int[] usage) throws IOException {
+        if (skipNull(json)) {
+            return;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "promptTokenCount" -> usage[0] = json.nextInt();
+                case "candidatesTokenCount" -> usage[1] = json.nextInt();
+                case "totalTokenCount" -> usage[2] = json.nextInt();
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Reads an object, handing the value of the given field to the reader callback and skipping all other fields.
+     */
+    private static void readObjectField(JsonReader json, String field, ValueReader valueReader) throws IOException {
+        if (skipNull(json)) {
+            return;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals(field)) {
+                valueReader.read();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private static boolean skipNull(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        void read() throws IOException;
+    }
+}
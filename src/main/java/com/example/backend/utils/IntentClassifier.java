@@ -0,0 +1,300 @@
+package com.example.backend.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local, rule-based intent classifier that runs in front of the Gemini classification prompts.
+ * It scores a message with keyword and regex rules, parses common date expressions for scheduled posts,
+ * and reports a confidence value. Callers only fall back to Gemini when the confidence is below the
+ * configured threshold. The rules are English only: a message in another language or script is never confidently
+ * classified as chat just because no English publishing word was found in it. Hit rate and agreement with Gemini are counted so the threshold can be tuned.
+ * Publishing cannot be undone, so a confident post or scheduled post prediction is only a hint that callers
+ * confirm with Gemini; only a confident chat prediction may be used without asking Gemini.
+ */
+@Component
+public class IntentClassifier {
+
+    private static final DateTimeFormatter SCHEDULE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final Pattern POST_VERB = Pattern.compile("\\b(post|publish|upload|share)\\b");
+    private static final Pattern FACEBOOK_CONTEXT = Pattern.compile("\\b(facebook|fb|page|feed|wall)\\b");
+    private static final Pattern IMPERATIVE_START = Pattern.compile(
+            "^(please\\s+)?(post|publish|upload|share|schedule|go ahead|let'?s|i want to|i'd like to|i would like to)\\b");
+    private static final Pattern QUESTION_START = Pattern.compile(
+            "^(how|what|why|when|which|who|where|should|is|are|do|does|did|can|could|would|will)\\b");
+    private static final Pattern SCHEDULE_WORD = Pattern.compile(
+            "\\b(schedule|scheduled|later|tomorrow|tonight|today at|next (week|monday|tuesday|wednesday|thursday|friday|saturday|sunday))\\b");
+
+    // Common English words, to tell English messages the rules understand from other Latin-script languages.
+    // Word boundaries are Unicode-aware, so the "a" of "ça" is not taken for a word.
+    private static final Pattern ENGLISH_WORD = Pattern.compile(
+            "\\b(the|a|an|i|you|we|it|is|are|was|be|to|of|for|and|or|in|on|with|my|our|your|this|that|what|how|can|do|please|me|hi|hello|thanks)\\b",
+            Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final Pattern ABSOLUTE_DATE_TIME = Pattern.compile("\\b(\\d{4}-\\d{2}-\\d{2})[ t](\\d{1,2}:\\d{2})\\b");
+    private static final Pattern RELATIVE_OFFSET = Pattern.compile("\\bin (\\d{1,3}) (minute|minutes|min|mins|hour|hours|day|days)\\b");
+    private static final Pattern DAY_WORD = Pattern.compile(
+            "\\b(today|tonight|tomorrow|(?:next )?(?:monday|tuesday|wednesday|thursday|friday|saturday|sunday))\\b");
+    private static final Pattern CLOCK_TIME = Pattern.compile("\\bat (\\d{1,2})(?::(\\d{2}))?\\s*(am|pm)?\\b");
+
+    private final double minConfidence;
+
+    private final AtomicLong classified = new AtomicLong();
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong llmFallbacks = new AtomicLong();
+    private final AtomicLong agreements = new AtomicLong();
+    private final AtomicLong disagreements = new AtomicLong();
+
+    public IntentClassifier(@Value("${chat.intent.local.min-confidence:0.8}") double minConfidence) {
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * The outcome of a local classification.
+     *
+     * @param intent        The most likely intent
+     * @param confidence    Confidence in the intent, between 0 and 1
+     * @param scheduledTime The parsed publish time formatted as 'yyyy-MM-dd HH:mm' for scheduled posts, otherwise null
+     * @param confident     Whether the confidence reaches the configured threshold, i.e. Gemini can be skipped
+     */
+    public record Prediction(ChatIntent intent, double confidence, String scheduledTime, boolean confident) {
+    }
+
+    /**
+     * Classifies a user message with the local rules and counts it as a local hit or an LLM fallback.
+     *
+     * @param message The user message
+     * @return The local prediction; {@link Prediction#confident()} tells whether it can be used as is
+     */
+    public Prediction classify(String message) {
+        return classify(message, LocalDateTime.now());
+    }
+
+    /**
+     * Same as {@link #classify(String)}, resolving relative date expressions against the given time.
+     */
+    Prediction classify(String message, LocalDateTime now) {
+        Prediction prediction = score(message, now);
+        classified.incrementAndGet();
+        if (prediction.confident()) {
+            localHits.incrementAndGet();
+        } else {
+            llmFallbacks.incrementAndGet();
+        }
+        return prediction;
+    }
+
+    /**
+     * Records whether the local best guess for a message matched the intent Gemini decided on.
+     *
+     * @param prediction The local prediction for the message
+     * @param llmIntent  The intent returned by Gemini for the same message
+     */
+    public void recordLlmResult(Prediction prediction, ChatIntent llmIntent) {
+        if (prediction.intent() == llmIntent) {
+            agreements.incrementAndGet();
+        } else {
+            disagreements.incrementAndGet();
+        }
+    }
+
+    private Prediction score(String message, LocalDateTime now) {
+        String text = message == null ? "" : message.trim().toLowerCase(Locale.ROOT);
+        if (text.isEmpty()) {
+            return prediction(ChatIntent.CHAT, 1.0, null);
+        }
+
+        boolean postVerb = POST_VERB.matcher(text).find();
+        boolean scheduleWord = SCHEDULE_WORD.matcher(text).find();
+        LocalDateTime scheduledTime = parseDateExpression(text, now);
+
+        // Nothing that looks like publishing: plain conversation, unless the rules may just not understand the language
+        if (!postVerb && !scheduleWord) {
+            return prediction(ChatIntent.CHAT, isEnglish(text) ? 0.9 : 0.5, null);
+        }
+
+        double score = 0.0;
+        if (postVerb) {
+            score += 0.5;
+        }
+        if (FACEBOOK_CONTEXT.matcher(text).find()) {
+            score += 0.25;
+        }
+        if (IMPERATIVE_START.matcher(text).find()) {
+            score += 0.25;
+        }
+        if (QUESTION_START.matcher(text).find() || text.endsWith("?")) {
+            score -= 0.4;
+        }
+        score = Math.max(0.0, Math.min(1.0, score));
+
+        if (scheduleWord || scheduledTime != null) {
+            if (!postVerb && !text.contains("schedule")) {
+                // A time reference without any publishing verb is most likely conversation
+                return prediction(ChatIntent.CHAT, 0.6, null);
+            }
+            if (scheduledTime == null) {
+                // Sounds like scheduling, but the time could not be understood locally
+                return prediction(ChatIntent.SCHEDULED_POST, Math.min(score, 0.5), null);
+            }
+            if (!scheduledTime.isAfter(now)) {
+                score = Math.min(score, 0.5);
+            }
+            return prediction(ChatIntent.SCHEDULED_POST, score, scheduledTime.format(SCHEDULE_FORMAT));
+        }
+
+        if (score < 0.5) {
+            // Mentions posting, but rather as a topic than as a request
+            return prediction(ChatIntent.CHAT, 1.0 - score, null);
+        }
+        return prediction(ChatIntent.POST, score, null);
+    }
+
+    /**
+     * @return Whether all letters of the text are Latin and it contains a common English word
+     */
+    private static boolean isEnglish(String text) {
+        boolean latinOnly = text.codePoints()
+                .filter(Character::isLetter)
+                .allMatch(codePoint -> Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.LATIN);
+        return latinOnly && ENGLISH_WORD.matcher(text).find();
+    }
+
+    private Prediction prediction(ChatIntent intent, double confidence, String scheduledTime) {
+        return new Prediction(intent, confidence, scheduledTime, confidence >= minConfidence);
+    }
+
+    /**
+     * Parses the date expressions users commonly write when scheduling: an absolute 'yyyy-MM-dd HH:mm' time,
+     * "in N minutes/hours/days", and a day word (today, tonight, tomorrow, a weekday) optionally followed by "at H[:mm] [am|pm]".
+     *
+     * @return The parsed time, or null if the message contains no date expression that can be resolved
+     */
+    private LocalDateTime parseDateExpression(String text, LocalDateTime now) {
+        Matcher absolute = ABSOLUTE_DATE_TIME.matcher(text);
+        if (absolute.find()) {
+            try {
+                LocalDate date = LocalDate.parse(absolute.group(1));
+                return date.atTime(parseClock(absolute.group(2)));
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        Matcher offset = RELATIVE_OFFSET.matcher(text);
+        if (offset.find()) {
+            long amount = Long.parseLong(offset.group(1));
+            String unit = offset.group(2);
+            LocalDateTime base = now.withSecond(0).withNano(0);
+            if (unit.startsWith("min")) {
+                return base.plusMinutes(amount);
+            } else if (unit.startsWith("hour")) {
+                return base.plusHours(amount);
+            }
+            return base.plusDays(amount);
+        }
+
+        Matcher day = DAY_WORD.matcher(text);
+        Matcher clock = CLOCK_TIME.matcher(text);
+        boolean hasDay = day.find();
+        boolean hasClock = clock.find();
+        if (!hasDay && !hasClock) {
+            return null;
+        }
+
+        LocalDate date = hasDay ? resolveDay(day.group(1), now.toLocalDate()) : now.toLocalDate();
+        LocalTime time;
+        if (hasClock) {
+            time = resolveClock(clock);
+            if (time == null) {
+                return null;
+            }
+        } else if (day.group(1).equals("tonight")) {
+            time = LocalTime.of(20, 0);
+        } else {
+            // A day without a time is too vague to schedule locally
+            return null;
+        }
+
+        LocalDateTime result = date.atTime(time);
+        if (!hasDay && !result.isAfter(now)) {
+            // "at 9" later than now refers to today, otherwise to tomorrow
+            result = result.plusDays(1);
+        }
+        return result;
+    }
+
+    private static LocalDate resolveDay(String dayWord, LocalDate today) {
+        switch (dayWord) {
+            case "today", "tonight":
+                return today;
+            case "tomorrow":
+                return today.plusDays(1);
+            default:
+                String dayName = dayWord.startsWith("next ") ? dayWord.substring(5) : dayWord;
+                DayOfWeek dayOfWeek = DayOfWeek.valueOf(dayName.toUpperCase(Locale.ROOT));
+                return today.with(TemporalAdjusters.next(dayOfWeek));
+        }
+    }
+
+    private static LocalTime resolveClock(Matcher clock) {
+        int hour = Integer.parseInt(clock.group(1));
+        int minute = clock.group(2) == null ? 0 : Integer.parseInt(clock.group(2));
+        String meridiem = clock.group(3);
+        if ("pm".equals(meridiem) && hour < 12) {
+            hour += 12;
+        } else if ("am".equals(meridiem) && hour == 12) {
+            hour = 0;
+        }
+        if (hour > 23 || minute > 59) {
+            return null;
+        }
+        return LocalTime.of(hour, minute);
+    }
+
+    private static LocalTime parseClock(String clock) {
+        String[] parts = clock.split(":");
+        return LocalTime.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    public long getClassifiedCount() {
+        return classified.get();
+    }
+
+    public long getLocalHitCount() {
+        return localHits.get();
+    }
+
+    public long getLlmFallbackCount() {
+        return llmFallbacks.get();
+    }
+
+    public long getAgreementCount() {
+        return agreements.get();
+    }
+
+    public long getDisagreementCount() {
+        return disagreements.get();
+    }
+
+    /**
+     * @return The share of messages classified without Gemini, between 0 and 1
+     */
+    public double getHitRate() {
+        long total = classified.get();
+        return total == 0 ? 0.0 : (double) localHits.get() / total;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.backend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable index of a page's past posts for spotting near-duplicates of a generated post locally.
+ * Every post is stored with its {@link Shingles}; a candidate is a near-duplicate of a post when the Jaccard
+ * similarity of their shingles reaches a given minimum, which also catches rephrased posts. With at most a few
+ * hundred posts per page, an exact comparison with every post takes well under a millisecond, and posts whose
+ * length alone rules out the minimum are skipped, so no MinHash signatures or other lookup structure are needed.
+ */
+public final class NearDuplicateIndex {
+
+    private static final NearDuplicateIndex EMPTY = new NearDuplicateIndex(List.of(), new long[0][]);
+
+    private final List<String> messages;
+    private final long[][] shingles;
+
+    private NearDuplicateIndex(List<String> messages, long[][] shingles) {
+        this.messages = messages;
+        this.shingles = shingles;
+    }
+
+    /**
+     * @param messages The posts of a page, newest first
+     */
+    public static NearDuplicateIndex of(List<String> messages) {
+        if (messages.isEmpty()) {
+            return EMPTY;
+        }
+        long[][] shingles = new long[messages.size()][];
+        for (int i = 0; i < shingles.length; i++) {
+            shingles[i] = Shingles.of(messages.get(i));
+        }
+        return new NearDuplicateIndex(List.copyOf(messages), shingles);
+    }
+
+    /**
+     * @return A copy of this index with the message added as the newest post, keeping at most maxMessages posts
+     */
+    public NearDuplicateIndex withNewest(String message, int maxMessages) {
+        int kept = Math.min(messages.size(), maxMessages - 1);
+        List<String> updated = new ArrayList<>(kept + 1);
+        updated.add(message);
+        updated.addAll(messages.subList(0, kept));
+        long[][] updatedShingles = new long[kept + 1][];
+        updatedShingles[0] = Shingles.of(message);
+        System.arraycopy(shingles, 0, updatedShingles, 1, kept);
+        return new NearDuplicateIndex(List.copyOf(updated), updatedShingles);
+    }
+
+    /**
+     * Finds the past post most similar to a candidate, if it is at least as similar as the given minimum.
+     *
+     * @param minSimilarity The lowest Jaccard similarity of the shingles that still counts as a near-duplicate, above 0
+     * @return The most similar past post, or null if no post is that similar
+     */
+    public String findNearDuplicate(String candidate, double minSimilarity) {
+        long[] candidateShingles = Shingles.of(candidate);
+        int closest = -1;
+        double closestSimilarity = minSimilarity;
+        for (int i = 0; i < shingles.length; i++) {
+            if (Shingles.maxSimilarity(candidateShingles.length, shingles[i].length) < closestSimilarity) {
+                continue;
+            }
+            double similarity = Shingles.similarity(candidateShingles, shingles[i]);
+            if (similarity >= closestSimilarity) {
+                closest = i;
+                closestSimilarity = similarity;
+            }
+        }
+        return closest < 0 ? null : messages.get(closest);
+    }
+
+    /**
+     * @return The newest posts, at most count of them
+     */
+    public List<String> newest(int count) {
+        return messages.subList(0, Math.min(count, messages.size()));
+    }
+
+    /**
+     * @return All posts, newest first
+     */
+    public List<String> messages() {
+        return messages;
+    }
+
+    public int size() {
+        return messages.size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.backend.utils;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Logback encoder that masks access tokens and session ids in the output of another encoder, configured as its
+ * nested {@code <encoder>} in logback-spring.xml. It works on the encoded line, so secrets are also masked in
+ * exception messages and stack traces, e.g. a Graph API URL with an access_token query parameter.
+ * Encoding runs on the async appender's worker thread, not on the thread that logs.
+ */
+public class RedactingEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final String MASK = "[REDACTED]";
+
+    // access_token=..., "access_token":"...", JSESSIONID=... and bare Facebook tokens (EAA...)
+    private static final Pattern QUERY_SECRET = Pattern.compile("(?i)((?:access_token|pageAccessToken|JSESSIONID)=)[^&\\s\"',;]+");
+    private static final Pattern JSON_SECRET = Pattern.compile("(?i)(\\\\?\"(?:access_token|pageAccessToken)\\\\?\"\\s*:\\s*\\\\?\")[^\"\\\\]+");
+    private static final Pattern FACEBOOK_TOKEN = Pattern.compile("\\bEAA[A-Za-z0-9]{20,}");
+
+    private Encoder<ILoggingEvent> encoder;
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    @Override
+    public void start() {
+        if (encoder == null) {
+            addError("No nested encoder set for " + getClass().getSimpleName());
+            return;
+        }
+        if (!encoder.isStarted()) {
+            encoder.start();
+        }
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return encoder.headerBytes();
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        byte[] encoded = encoder.encode(event);
+        return encoded == null ? null : redact(new String(encoded, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return encoder.footerBytes();
+    }
+
+    /**
+     * @return The text with every access token and session id replaced by a mask
+     */
+    public static String redact(String text) {
+        String redacted = QUERY_SECRET.matcher(text).replaceAll("$1" + MASK);
+        redacted = JSON_SECRET.matcher(redacted).replaceAll("$1" + MASK);
+        return FACEBOOK_TOKEN.matcher(redacted).replaceAll(MASK);
+    }
+}
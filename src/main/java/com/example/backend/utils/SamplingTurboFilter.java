@@ -0,0 +1,36 @@
+package com.example.backend.utils;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logback turbo filter that lets through only a share of the events of the loggers under a prefix, used for the
+ * verbose payload logs (prompts, existing posts, generated text). It decides before the event is created,
+ * so dropped payload logs cost neither formatting nor a place in the async queue.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private String loggerPrefix = "payload.";
+    private double rate = 0.01;
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (logger.getName().startsWith(loggerPrefix) && ThreadLocalRandom.current().nextDouble() >= rate) {
+            return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+}
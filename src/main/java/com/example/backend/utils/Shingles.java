@@ -0,0 +1,77 @@
+package com.example.backend.utils;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Character shingles of short texts, such as Facebook posts, for measuring how much two texts overlap.
+ * The text is lower-cased and every run of characters other than letters and digits becomes a single space;
+ * every three consecutive characters then form a shingle. The Jaccard similarity of two shingle sets stays high
+ * for a rephrased text that keeps most of its words or word stems ("freshly roasted" and "fresh-roasted"),
+ * and low for texts that only share a few common words.
+ */
+public final class Shingles {
+
+    private static final int LENGTH = 3;
+
+    private Shingles() {
+    }
+
+    /**
+     * @return The distinct shingles of the text, each packed into a long, in ascending order; empty for a text without words
+     */
+    public static long[] of(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        if (normalized.isEmpty()) {
+            return new long[0];
+        }
+        // Padded, so that short words and the first and last word have shingles of their own
+        String padded = " " + normalized + " ";
+        long[] shingles = new long[padded.length() - LENGTH + 1];
+        for (int i = 0; i < shingles.length; i++) {
+            shingles[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        Arrays.sort(shingles);
+        int distinct = 0;
+        for (int i = 0; i < shingles.length; i++) {
+            if (i == 0 || shingles[i] != shingles[i - 1]) {
+                shingles[distinct++] = shingles[i];
+            }
+        }
+        return Arrays.copyOf(shingles, distinct);
+    }
+
+    /**
+     * @param a Shingles as returned by {@link #of(String)}
+     * @param b Shingles as returned by {@link #of(String)}
+     * @return The Jaccard similarity of the two sets: the shared shingles over all shingles, from 0 to 1
+     */
+    public static double similarity(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    /**
+     * @return The highest similarity two sets of these sizes can have, for skipping comparisons that cannot match
+     */
+    public static double maxSimilarity(int sizeA, int sizeB) {
+        int larger = Math.max(sizeA, sizeB);
+        return larger == 0 ? 0 : (double) Math.min(sizeA, sizeB) / larger;
+    }
+}
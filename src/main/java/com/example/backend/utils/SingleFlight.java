@@ -0,0 +1,70 @@
+package com.example.backend.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a key is in flight, further callers with the same key
+ * subscribe to it instead of starting their own, and all of them receive the same value or error.
+ * A caller cancelling only detaches that caller; the shared call is cancelled once every caller has cancelled.
+ * Finished calls are forgotten right away, so this never serves stale results.
+ * The shared call runs with the Reactor context, e.g. the {@link Deadline}, of the caller that started it;
+ * every caller still stops waiting at its own deadline.
+ *
+ * @param <T> The result type
+ */
+public class SingleFlight<T> {
+
+    private final Map<String, Mono<T>> inFlight = new ConcurrentHashMap<>();
+    private final Counter calls;
+    private final Counter coalesced;
+
+    /**
+     * @param name          The name used as the "name" tag of the single.flight.* metrics
+     * @param meterRegistry Registry for the started and coalesced call counters
+     */
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.calls = meterRegistry.counter("single.flight.calls", "name", name);
+        this.coalesced = meterRegistry.counter("single.flight.coalesced", "name", name);
+    }
+
+    /**
+     * Runs the call for a key, or joins the call for the same key that is already in flight.
+     *
+     * @param key  Identifies identical calls, e.g. a hash of the request body
+     * @param call Starts the call; only invoked when no call for the key is in flight
+     * @return The result of the shared call
+     */
+    public Mono<T> execute(String key, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            boolean[] started = new boolean[1];
+            Mono<T> flight = inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                // Runs once the shared call completes, fails or is cancelled by its last subscriber. A late signal,
+                // e.g. a cancellation racing with completion, must not remove a newer flight for the same key.
+                AtomicReference<Mono<T>> self = new AtomicReference<>();
+                Mono<T> shared = call.get()
+                        .doFinally(signal -> inFlight.remove(k, self.get()))
+                        .share();
+                self.set(shared);
+                return shared;
+            });
+            if (started[0]) {
+                calls.increment();
+            } else {
+                coalesced.increment();
+            }
+            return flight;
+        });
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
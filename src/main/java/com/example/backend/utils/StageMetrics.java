@@ -0,0 +1,122 @@
+package com.example.backend.utils;
+
+import com.example.backend.clients.DependencyUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Timers for the chat pipelines and their stages, published with percentile histograms.
+ * <ul>
+ *     <li>chat.pipeline: a whole request or scheduled task, tagged with pipeline, outcome and status</li>
+ *     <li>chat.stage: one step of a pipeline, such as intent classification, history fetch, prompt build,
+ *     generation, Graph post or Cloudinary upload, tagged with pipeline, stage, dependency, outcome, status
+ *     and exception</li>
+ * </ul>
+ * The pipeline name travels in the Reactor context, so services can time their stages without knowing
+ * which request or task they are serving. The status tag holds the HTTP status of a failed upstream call,
+ * "ok" on success, or the kind of failure (rejected, timeout, error).
+ */
+@Component
+public class StageMetrics {
+
+    private static final String PIPELINE_KEY = "chat.pipeline";
+
+    private final MeterRegistry meterRegistry;
+
+    public StageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Times a whole pipeline whose result is an HTTP response; the status tag is the response status.
+     */
+    public <T> Mono<ResponseEntity<T>> pipeline(String pipeline, Mono<ResponseEntity<T>> work) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return work
+                    .doOnSuccess(response -> sample.stop(pipelineTimer(pipeline, "success",
+                            response == null ? "none" : String.valueOf(response.getStatusCode().value()))))
+                    .doOnError(e -> sample.stop(pipelineTimer(pipeline, "error", status(e))))
+                    .doOnCancel(() -> sample.stop(pipelineTimer(pipeline, "cancelled", "none")));
+        }).contextWrite(ctx -> ctx.put(PIPELINE_KEY, pipeline));
+    }
+
+    /**
+     * Times a whole streamed pipeline, from subscription until the stream ends.
+     */
+    public <T> Flux<T> pipeline(String pipeline, Flux<T> work) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return work
+                    .doOnComplete(() -> sample.stop(pipelineTimer(pipeline, "success", "ok")))
+                    .doOnError(e -> sample.stop(pipelineTimer(pipeline, "error", status(e))))
+                    .doOnCancel(() -> sample.stop(pipelineTimer(pipeline, "cancelled", "none")));
+        }).contextWrite(ctx -> ctx.put(PIPELINE_KEY, pipeline));
+    }
+
+    /**
+     * Times a pipeline that does not produce an HTTP response, such as a scheduled task.
+     */
+    public <T> Mono<T> task(String pipeline, Mono<T> work) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return work
+                    .doOnSuccess(value -> sample.stop(pipelineTimer(pipeline, "success", "ok")))
+                    .doOnError(e -> sample.stop(pipelineTimer(pipeline, "error", status(e))))
+                    .doOnCancel(() -> sample.stop(pipelineTimer(pipeline, "cancelled", "none")));
+        }).contextWrite(ctx -> ctx.put(PIPELINE_KEY, pipeline));
+    }
+
+    /**
+     * Times one stage of the current pipeline, from subscription until it terminates.
+     *
+     * @param stage      The stage name, e.g. "generation"
+     * @param dependency The external dependency the stage calls, or "none"
+     */
+    public <T> Mono<T> stage(String stage, String dependency, Mono<T> work) {
+        return Mono.deferContextual(context -> {
+            String pipeline = context.getOrDefault(PIPELINE_KEY, "none");
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return work
+                    .doOnSuccess(value -> sample.stop(stageTimer(pipeline, stage, dependency, "success", "ok", "none")))
+                    .doOnError(e -> sample.stop(stageTimer(pipeline, stage, dependency, "error", status(e), e.getClass().getSimpleName())))
+                    .doOnCancel(() -> sample.stop(stageTimer(pipeline, stage, dependency, "cancelled", "none", "none")));
+        });
+    }
+
+    private Timer pipelineTimer(String pipeline, String outcome, String status) {
+        return Timer.builder("chat.pipeline")
+                .tags(Tags.of("pipeline", pipeline, "outcome", outcome, "status", status))
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Timer stageTimer(String pipeline, String stage, String dependency, String outcome, String status, String exception) {
+        return Timer.builder("chat.stage")
+                .tags(Tags.of("pipeline", pipeline, "stage", stage, "dependency", dependency,
+                        "outcome", outcome, "status", status, "exception", exception))
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String status(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return String.valueOf(response.getStatusCode().value());
+        }
+        if (e instanceof DependencyUnavailableException) {
+            return "rejected";
+        }
+        if (e instanceof TimeoutException || e instanceof DeadlineExceededException) {
+            return "timeout";
+        }
+        return "error";
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.backend.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects time-to-first-token and completion statistics for streamed chat replies.
+ * Time to first token is timed as chat.stream.first.token, published with a percentile histogram.
+ */
+@Component
+public class StreamingMetrics {
+
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Timer timeToFirstToken;
+
+    public StreamingMetrics(MeterRegistry meterRegistry) {
+        this.timeToFirstToken = Timer.builder("chat.stream.first.token")
+                .description("Delay between sending a streamed request to Gemini and receiving its first token")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void streamStarted() {
+        streams.incrementAndGet();
+    }
+
+    /**
+     * Records the delay between sending the request to Gemini and receiving the first token.
+     *
+     * @param nanos The time to first token in nanoseconds
+     */
+    public void firstToken(long nanos) {
+        timeToFirstToken.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void streamCompleted() {
+        completed.incrementAndGet();
+    }
+
+    public void streamCancelled() {
+        cancelled.incrementAndGet();
+    }
+
+    public void streamFailed() {
+        failed.incrementAndGet();
+    }
+
+    public long getStreamCount() {
+        return streams.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.backend.utils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fast local estimate of how many tokens Gemini will count for a text, without calling the countTokens endpoint.
+ * Latin text averages about four characters per token; other scripts (e.g. Hebrew) are split into
+ * noticeably more tokens, so their characters are counted at two per token. The estimate errs on the high side.
+ */
+public final class TokenEstimator {
+
+    /** Tokens added for the role and structure of every message. */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + (other + 1) / 2;
+    }
+
+    /**
+     * Estimates the tokens of one message in Gemini API format, i.e. its role and the text of all its parts.
+     */
+    public static int estimate(Map<String, Object> message) {
+        return MESSAGE_OVERHEAD + estimate(messageText(message));
+    }
+
+    /**
+     * Joins the text of all parts of a message in Gemini API format.
+     *
+     * @return The text, or an empty string if the message has no text parts
+     */
+    static String messageText(Map<String, Object> message) {
+        if (!(message.get("parts") instanceof List<?> parts)) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Map<?, ?> map && map.get("text") instanceof String partText) {
+                if (!text.isEmpty()) {
+                    text.append('\n');
+                }
+                text.append(partText);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.backend.utils;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.micrometer.tracing.Link;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * Tracing spans for the controller handlers, service calls and scheduled tasks.
+ * A span is an {@link Observation} kept in the Reactor context, so spans started further down the pipeline,
+ * including the WebClient calls to Gemini and the Graph API, become its children. Spans are exported by
+ * Micrometer Tracing's OpenTelemetry bridge, to the log and optionally to an OTLP collector.
+ * <p>
+ * A scheduled task runs long after the request that scheduled it has finished, so it starts a trace of its own;
+ * {@link #linkedTask(String, Runnable)} adds a span link pointing back at the scheduling request.
+ */
+@Component
+public class TraceSpans {
+
+    private static final String OBSERVATION_NAME = "chat.span";
+
+    private final ObservationRegistry observationRegistry;
+    private final Tracer tracer;
+
+    public TraceSpans(ObservationRegistry observationRegistry, Tracer tracer) {
+        this.observationRegistry = observationRegistry;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Wraps a call in a span that starts on subscription and ends when the call terminates or is cancelled.
+     *
+     * @param name The span name, e.g. "FacebookService.postToFacebook"
+     */
+    public <T> Mono<T> span(String name, Mono<T> work) {
+        return Mono.deferContextual(context -> {
+            Observation observation = start(name, context);
+            return work
+                    .doOnError(observation::error)
+                    .doOnCancel(() -> observation.lowCardinalityKeyValue("cancelled", "true"))
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #span(String, Mono)}; the span covers the whole stream.
+     */
+    public <T> Flux<T> span(String name, Flux<T> work) {
+        return Flux.deferContextual(context -> {
+            Observation observation = start(name, context);
+            return work
+                    .doOnError(observation::error)
+                    .doOnCancel(() -> observation.lowCardinalityKeyValue("cancelled", "true"))
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    /**
+     * Prepares a task to be run by the task scheduler. The task gets its own root span, linked to the span of
+     * the current request, so a failure hours later can be traced back to the request that scheduled it.
+     *
+     * @param name The span name of the task runs
+     * @param task The task
+     * @return The task wrapped in its span, captured from the calling pipeline
+     */
+    public Mono<Runnable> linkedTask(String name, Runnable task) {
+        return Mono.deferContextual(context -> {
+            TraceContext origin = currentTraceContext(context);
+            Runnable linked = () -> {
+                Span.Builder builder = tracer.spanBuilder().name(name).setNoParent();
+                if (origin != null) {
+                    builder.addLink(new Link(origin));
+                    builder.tag("scheduled.by.trace_id", origin.traceId());
+                }
+                Span span = builder.start();
+                try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+                    task.run();
+                } catch (RuntimeException e) {
+                    span.error(e);
+                    throw e;
+                } finally {
+                    span.end();
+                }
+            };
+            return Mono.just(linked);
+        });
+    }
+
+    private Observation start(String name, ContextView context) {
+        Observation parent = context.getOrDefault(ObservationThreadLocalAccessor.KEY, observationRegistry.getCurrentObservation());
+        return Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+                .contextualName(name)
+                .lowCardinalityKeyValue("operation", name)
+                .parentObservation(parent)
+                .start();
+    }
+
+    /**
+     * @return The trace context of the innermost span of the calling pipeline or thread, or null if there is none
+     */
+    private TraceContext currentTraceContext(ContextView context) {
+        Observation observation = context.getOrDefault(ObservationThreadLocalAccessor.KEY, observationRegistry.getCurrentObservation());
+        if (observation != null) {
+            TracingObservationHandler.TracingContext tracing = observation.getContextView().get(TracingObservationHandler.TracingContext.class);
+            if (tracing != null && tracing.getSpan() != null) {
+                return tracing.getSpan().context();
+            }
+        }
+        Span current = tracer.currentSpan();
+        return current == null ? null : current.context();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.backend.clients;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class DependencyGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private DependencyGuard guard(String openDuration, int maxConcurrent, int maxQueue) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("dependency.test.max-concurrent", String.valueOf(maxConcurrent))
+                .withProperty("dependency.test.max-queue", String.valueOf(maxQueue))
+                .withProperty("dependency.test.max-wait", "5s")
+                .withProperty("dependency.test.failure-rate-threshold", "0.5")
+                .withProperty("dependency.test.window-size", "4")
+                .withProperty("dependency.test.min-calls", "4")
+                .withProperty("dependency.test.open-duration", openDuration)
+                .withProperty("dependency.test.half-open-probes", "2");
+        environment.setConversionService(new ApplicationConversionService());
+        return new DependencyGuard("test", IllegalStateException.class::isInstance, environment, meterRegistry);
+    }
+
+    private Mono<String> succeeding() {
+        return Mono.fromSupplier(() -> {
+            calls.incrementAndGet();
+            return "ok";
+        });
+    }
+
+    private Mono<String> failing(RuntimeException error) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(error);
+        });
+    }
+
+    private static void run(DependencyGuard guard, Mono<String> call) {
+        guard.protect(call).onErrorResume(e -> Mono.empty()).block(Duration.ofSeconds(1));
+    }
+
+    private double state() {
+        return meterRegistry.get("dependency.circuit.state").tag("dependency", "test").gauge().value();
+    }
+
+    private static void expectRejected(Mono<?> call, String reason) {
+        StepVerifier.create(call)
+                .expectErrorSatisfies(e -> assertEquals(reason, assertInstanceOf(DependencyUnavailableException.class, e).getReason()))
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void breakerOpensAtTheFailureRateAndRejectsCalls() {
+        DependencyGuard guard = guard("1m", 10, 10);
+        run(guard, succeeding());
+        run(guard, succeeding());
+        run(guard, failing(new IllegalStateException("down")));
+        run(guard, failing(new IllegalStateException("down")));
+        assertEquals(1, state());
+
+        expectRejected(guard.protect(succeeding()), "circuit-open");
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void errorsThatAreNotFailuresKeepTheBreakerClosed() {
+        DependencyGuard guard = guard("1m", 10, 10);
+        for (int i = 0; i < 4; i++) {
+            run(guard, failing(new IllegalArgumentException("bad request")));
+        }
+
+        assertEquals(0, state());
+        StepVerifier.create(guard.protect(succeeding())).expectNext("ok").verifyComplete();
+    }
+
+    @Test
+    void successfulProbesCloseTheBreaker() {
+        DependencyGuard guard = guard("0s", 10, 10);
+        for (int i = 0; i < 4; i++) {
+            run(guard, failing(new IllegalStateException("down")));
+        }
+        assertEquals(1, state());
+
+        run(guard, succeeding());
+        assertEquals(2, state());
+        run(guard, succeeding());
+        assertEquals(0, state());
+    }
+
+    @Test
+    void halfOpenBreakerOnlyLetsTheProbesThrough() {
+        DependencyGuard guard = guard("0s", 10, 10);
+        for (int i = 0; i < 4; i++) {
+            run(guard, failing(new IllegalStateException("down")));
+        }
+
+        Disposable first = guard.protect(Mono.never()).subscribe();
+        Disposable second = guard.protect(Mono.never()).subscribe();
+        expectRejected(guard.protect(succeeding()), "circuit-open");
+
+        // A cancelled probe frees its place for another one
+        first.dispose();
+        StepVerifier.create(guard.protect(succeeding())).expectNext("ok").verifyComplete();
+        second.dispose();
+    }
+
+    @Test
+    void failedProbeReopensTheBreaker() {
+        DependencyGuard guard = guard("0s", 10, 10);
+        for (int i = 0; i < 4; i++) {
+            run(guard, failing(new IllegalStateException("down")));
+        }
+
+        run(guard, succeeding());
+        run(guard, failing(new IllegalStateException("still down")));
+
+        assertEquals(1, state());
+    }
+
+    @Test
+    void bulkheadQueuesAndThenRejectsWhenFull() {
+        DependencyGuard guard = guard("1m", 1, 1);
+        Disposable running = guard.protect(Mono.never()).subscribe();
+        StepVerifier queued = StepVerifier.create(guard.protect(succeeding())).expectNext("ok").expectComplete().verifyLater();
+        assertEquals(1, guard.getActiveCount());
+        assertEquals(1, guard.getQueuedCount());
+
+        expectRejected(guard.protect(succeeding()), "bulkhead-full");
+
+        running.dispose();
+        queued.verify(Duration.ofSeconds(1));
+        assertEquals(0, guard.getActiveCount());
+        assertEquals(0, guard.getQueuedCount());
+    }
+
+    @Test
+    void queuedCallIsRejectedAfterTheMaximumWait() {
+        DependencyGuard guard = guard("1m", 1, 1);
+        guard.protect(Mono.never()).subscribe();
+
+        StepVerifier.withVirtualTime(() -> guard.protect(succeeding()))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(5))
+                .expectErrorSatisfies(e -> assertEquals("bulkhead-timeout", assertInstanceOf(DependencyUnavailableException.class, e).getReason()))
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(0, guard.getQueuedCount());
+        assertEquals(0, calls.get());
+        // Rejections by the bulkhead say nothing about the dependency
+        assertEquals(0, state());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.backend.clients;
+
+import com.example.backend.utils.Deadline;
+import com.example.backend.utils.DeadlineExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GeminiRateLimiterTest {
+
+    private static final WebClientResponseException TOO_MANY_REQUESTS =
+            WebClientResponseException.create(429, "Too Many Requests", HttpHeaders.EMPTY, new byte[0], null);
+
+    private static GeminiRateLimiter limiter(int initialLimit, int windowSize, int maxQueueSize) {
+        return new GeminiRateLimiter(new SimpleMeterRegistry(), true, 1000, 1_000_000,
+                initialLimit, 1, 50, 2.0, windowSize, Duration.ofSeconds(30), maxQueueSize);
+    }
+
+    private static List<GeminiRateLimiter.Permit> acquire(GeminiRateLimiter limiter, int count) {
+        List<GeminiRateLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.acquire(1).block(Duration.ofSeconds(1)));
+        }
+        return permits;
+    }
+
+    @Test
+    void queuedCallGetsThePermitOnceItIsReleased() {
+        GeminiRateLimiter limiter = limiter(1, 10, 10);
+        GeminiRateLimiter.Permit held = acquire(limiter, 1).get(0);
+
+        StepVerifier.create(limiter.acquire(1))
+                .expectSubscription()
+                .then(() -> assertEquals(1, limiter.getQueueDepth()))
+                .then(held::released)
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedCallIsRejectedAfterTheMaximumWait() {
+        GeminiRateLimiter limiter = limiter(1, 10, 10);
+        acquire(limiter, 1);
+
+        StepVerifier.withVirtualTime(() -> limiter.acquire(1))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(29))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectError(RateLimitExceededException.class)
+                .verify(Duration.ofSeconds(1));
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    void requestDeadlineFiringWhileQueuedGivesUpTheWait() {
+        GeminiRateLimiter limiter = limiter(1, 10, 10);
+        GeminiRateLimiter.Permit held = acquire(limiter, 1).get(0);
+
+        StepVerifier.withVirtualTime(() -> Deadline.enforce(limiter.acquire(1), Duration.ofSeconds(2)))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(2))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(0, limiter.getQueueDepth());
+        // The permit is not handed to the caller that gave up
+        held.released();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void callIsRejectedWhenTheQueueIsFull() {
+        GeminiRateLimiter limiter = limiter(1, 10, 1);
+        acquire(limiter, 1);
+        limiter.acquire(1).subscribe();
+
+        StepVerifier.create(limiter.acquire(1))
+                .expectError(RateLimitExceededException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void throttlingCutsTheLimitOncePerWindow() {
+        GeminiRateLimiter limiter = limiter(10, 10, 10);
+        List<GeminiRateLimiter.Permit> permits = acquire(limiter, 10);
+
+        for (int i = 0; i < 3; i++) {
+            permits.get(i).failed(TOO_MANY_REQUESTS);
+        }
+        assertEquals(7.0, limiter.getLimit(), 1e-9);
+
+        for (int i = 3; i < 10; i++) {
+            permits.get(i).succeeded(0);
+        }
+        assertEquals(7.0, limiter.getLimit(), 1e-9);
+
+        // The next window may cut again
+        acquire(limiter, 1).get(0).failed(TOO_MANY_REQUESTS);
+        assertEquals(4.9, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void timeoutsCutTheLimit() {
+        GeminiRateLimiter limiter = limiter(10, 10, 10);
+
+        acquire(limiter, 1).get(0).failed(new TimeoutException());
+
+        assertEquals(7.0, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void limitDoesNotDropBelowTheMinimum() {
+        GeminiRateLimiter limiter = limiter(1, 1, 10);
+
+        for (int i = 0; i < 3; i++) {
+            acquire(limiter, 1).get(0).failed(TOO_MANY_REQUESTS);
+        }
+
+        assertEquals(1.0, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void healthyWindowRaisesTheLimit() {
+        GeminiRateLimiter limiter = limiter(10, 10, 10);
+
+        acquire(limiter, 10).forEach(permit -> permit.succeeded(0));
+
+        assertEquals(11.0, limiter.getLimit(), 1e-9);
+    }
+
+    @Test
+    void failuresUnrelatedToLoadKeepTheLimit() {
+        GeminiRateLimiter limiter = limiter(10, 10, 10);
+
+        acquire(limiter, 1).get(0).failed(new DeadlineExceededException(Duration.ofSeconds(1)));
+
+        assertEquals(10.0, limiter.getLimit(), 1e-9);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.backend.clients;
+
+import com.example.backend.utils.DeadlineExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GeminiResilienceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GeminiResilience resilience = new GeminiResilience(meterRegistry, 3, Duration.ofMillis(500),
+            Duration.ofSeconds(8), Duration.ofSeconds(30), false, Duration.ofMillis(500), 0.1);
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private static WebClientResponseException response(int status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return WebClientResponseException.create(status, "status " + status, headers, new byte[0], null);
+    }
+
+    /**
+     * @return A call that fails with the given error on its first attempts and then answers "reply"
+     */
+    private Mono<String> failingTimes(int failures, Throwable error) {
+        return resilience.execute(() -> attempts.incrementAndGet() <= failures ? Mono.error(error) : Mono.just("reply"));
+    }
+
+    @Test
+    void throttledCallIsRetried() {
+        StepVerifier.withVirtualTime(() -> failingTimes(2, response(429, null)))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("reply")
+                .verifyComplete();
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, meterRegistry.counter("gemini.retries", "cause", "throttled").count());
+    }
+
+    @Test
+    void serverErrorIsRetried() {
+        StepVerifier.withVirtualTime(() -> failingTimes(1, response(503, null)))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("reply")
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void timeoutIsRetried() {
+        StepVerifier.withVirtualTime(() -> failingTimes(1, new TimeoutException()))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("reply")
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void clientErrorIsNotRetried() {
+        StepVerifier.withVirtualTime(() -> failingTimes(1, response(400, null)))
+                .expectError(WebClientResponseException.BadRequest.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void deadlineAndLocalRejectionsAreNotRetried() {
+        StepVerifier.withVirtualTime(() -> failingTimes(1, new DeadlineExceededException(Duration.ofSeconds(1))))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+        assertEquals(1, attempts.get());
+
+        attempts.set(0);
+        StepVerifier.withVirtualTime(() -> failingTimes(1, new RateLimitExceededException("gemini", "queue is full", Duration.ofSeconds(1))))
+                .expectError(RateLimitExceededException.class)
+                .verify(Duration.ofSeconds(1));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void givesUpAfterTheMaximumRetries() {
+        StepVerifier.withVirtualTime(() -> failingTimes(10, response(500, null)))
+                .thenAwait(Duration.ofSeconds(30))
+                .expectError(WebClientResponseException.InternalServerError.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void retryWaitsForRetryAfter() {
+        StepVerifier.withVirtualTime(() -> failingTimes(1, response(429, "20")))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(19))
+                .then(() -> assertEquals(1, attempts.get()))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("reply")
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void retryAfterBeyondTheMaximumFailsRightAway() {
+        StepVerifier.withVirtualTime(() -> failingTimes(1, response(429, "120")))
+                .expectError(WebClientResponseException.TooManyRequests.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void streamIsOnlyRetriedBeforeItEmitted() {
+        StepVerifier.withVirtualTime(() -> resilience.executeStream(() -> attempts.incrementAndGet() == 1
+                        ? Flux.<String>error(response(503, null))
+                        : Flux.just("a", "b")))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("a", "b")
+                .verifyComplete();
+        assertEquals(2, attempts.get());
+
+        attempts.set(0);
+        StepVerifier.withVirtualTime(() -> resilience.executeStream(() -> {
+                    attempts.incrementAndGet();
+                    return Flux.just("a").concatWith(Flux.error(response(503, null)));
+                }))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext("a")
+                .expectError(WebClientResponseException.ServiceUnavailable.class)
+                .verify(Duration.ofSeconds(1));
+        assertEquals(1, attempts.get());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.backend.clients;
+
+import com.example.backend.utils.FeedPage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GraphApiClientTest {
+
+    private static final String GRAPH = "https://graph.facebook.com";
+
+    private final List<URI> requests = new ArrayList<>();
+
+    /**
+     * @param pages Response bodies by the path and query of the request, e.g. "/v22.0/1/feed?after=b"
+     */
+    private GraphApiClient client(Map<String, String> pages) {
+        WebClient webClient = WebClient.builder()
+                .baseUrl(GRAPH)
+                .exchangeFunction(request -> {
+                    requests.add(request.url());
+                    String path = request.url().getRawPath();
+                    String body = request.url().getRawQuery().contains("after=")
+                            ? pages.get(path + "?" + request.url().getRawQuery())
+                            : pages.get(path);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(body)
+                            .build());
+                })
+                .build();
+        DependencyGuard guard = new DependencyGuard("graph", e -> true, new MockEnvironment(), new SimpleMeterRegistry());
+        GraphApiClient client = new GraphApiClient(webClient, guard);
+        ReflectionTestUtils.setField(client, "version", "v22.0");
+        ReflectionTestUtils.setField(client, "baseUrl", GRAPH);
+        ReflectionTestUtils.setField(client, "totalTimeout", Duration.ofSeconds(10));
+        return client;
+    }
+
+    private static String page(String next, String... messages) {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < messages.length; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append("{\"id\": \"1_").append(i).append('"');
+            if (messages[i] != null) {
+                data.append(", \"message\": \"").append(messages[i]).append('"');
+            }
+            data.append('}');
+        }
+        String paging = next == null ? "" : ", \"paging\": {\"next\": \"" + next + "\"}";
+        return "{\"data\": [" + data + "]" + paging + "}";
+    }
+
+    private List<String> messages(GraphApiClient client, int pageSize, int maxPosts) {
+        return client.getFeedPosts("1", "token", pageSize, maxPosts, null)
+                .map(FeedPage.Post::message)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void followsPagingUntilEnoughPostsWereSeen() {
+        GraphApiClient client = client(Map.of(
+                "/v22.0/1/feed", page(GRAPH + "/v22.0/1/feed?after=b", "a", null, "b"),
+                "/v22.0/1/feed?after=b", page(GRAPH + "/v22.0/1/feed?after=c", "c", "d", null),
+                "/v22.0/1/feed?after=c", page(null, "e")));
+
+        // Six posts were seen after the second page, more than the five asked for
+        assertEquals(List.of("a", "b", "c", "d"), messages(client, 3, 5));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void pageWithoutMessagesDoesNotStopThePaging() {
+        GraphApiClient client = client(Map.of(
+                "/v22.0/1/feed", page(GRAPH + "/v22.0/1/feed?after=b", null, null),
+                "/v22.0/1/feed?after=b", page(null, "a", "b")));
+
+        assertEquals(List.of("a", "b"), messages(client, 2, 10));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void pagingLinkToAnotherHostIsNotFollowed() {
+        GraphApiClient client = client(Map.of(
+                "/v22.0/1/feed", page("https://graph.example.com/v22.0/1/feed?after=b", "a")));
+
+        assertEquals(List.of("a"), messages(client, 1, 10));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void pagingLinkWithAnotherSchemeIsNotFollowed() {
+        GraphApiClient client = client(Map.of(
+                "/v22.0/1/feed", page("http://graph.facebook.com/v22.0/1/feed?after=b", "a")));
+
+        assertEquals(List.of("a"), messages(client, 1, 10));
+        assertEquals(1, requests.size());
+    }
+}
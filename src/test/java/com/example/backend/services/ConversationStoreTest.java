@@ -0,0 +1,119 @@
+package com.example.backend.services;
+
+import com.example.backend.entity.ConversationTurn;
+import com.example.backend.repository.ConversationTurnRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationStoreTest {
+
+    private final ConversationTurnRepository repository = mock(ConversationTurnRepository.class);
+    private final List<ConversationTurn> stored = new ArrayList<>();
+    private final ConversationStore store = new ConversationStore(repository, 1);
+    private boolean databaseDown;
+
+    @BeforeEach
+    void storeTurnsInMemory() {
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            if (databaseDown) {
+                throw new IllegalStateException("database down");
+            }
+            Iterable<ConversationTurn> turns = invocation.getArgument(0);
+            turns.forEach(stored::add);
+            return List.of();
+        });
+        when(repository.findByConversationIdOrderByTurnIndexAsc(anyString())).thenAnswer(invocation -> stored.stream()
+                .filter(turn -> turn.getConversationId().equals(invocation.getArgument(0)))
+                .toList());
+    }
+
+    @Test
+    void userMessageIsOnlyStoredWithItsReply() {
+        assertEquals(List.of("hello"), texts(store.withUserMessage("s1:a", "hello")));
+        assertEquals(List.of("again"), texts(store.withUserMessage("s1:a", "again")));
+
+        store.appendExchange("s1:a", "hello", "hi");
+
+        assertEquals(List.of("hello", "hi", "again"), texts(store.withUserMessage("s1:a", "again")));
+    }
+
+    @Test
+    void leastRecentlyUsedConversationIsSpilledAndLoadedBack() {
+        store.appendExchange("s1:a", "hello", "hi");
+        store.appendExchange("s1:b", "other", "reply");
+
+        assertEquals(1, store.getCachedConversationCount());
+        assertEquals(1, store.getSpillCount());
+        assertEquals(List.of("hello", "hi"), stored.stream().map(ConversationTurn::getText).toList());
+
+        assertEquals(List.of("hello", "hi", "next"), texts(store.withUserMessage("s1:a", "next")));
+        assertEquals(1, store.getLoadCount());
+    }
+
+    @Test
+    void onlyNewTurnsAreWrittenOnTheNextSpill() {
+        store.appendExchange("s1:a", "hello", "hi");
+        store.appendExchange("s1:b", "other", "reply");
+        store.appendExchange("s1:a", "next", "answer");
+        store.appendExchange("s1:b", "more", "sure");
+
+        List<Integer> turnIndexes = stored.stream()
+                .filter(turn -> turn.getConversationId().equals("s1:a"))
+                .map(ConversationTurn::getTurnIndex)
+                .toList();
+        assertEquals(List.of(0, 1, 2, 3), turnIndexes);
+    }
+
+    @Test
+    void conversationThatCouldNotBeWrittenStaysInMemory() {
+        databaseDown = true;
+        store.appendExchange("s1:a", "hello", "hi");
+        store.appendExchange("s1:b", "other", "reply");
+
+        assertEquals(0, store.getSpillCount());
+        assertEquals(List.of("hello", "hi", "next"), texts(store.withUserMessage("s1:a", "next")));
+        store.appendExchange("s1:a", "next", "answer");
+        // Only read when the conversation started
+        verify(repository, times(1)).findByConversationIdOrderByTurnIndexAsc("s1:a");
+
+        databaseDown = false;
+        store.appendExchange("s1:b", "more", "sure");
+
+        assertEquals(List.of("hello", "hi", "next", "answer"), stored.stream()
+                .filter(turn -> turn.getConversationId().equals("s1:a"))
+                .map(ConversationTurn::getText)
+                .toList());
+    }
+
+    @Test
+    void endedSessionIsForgotten() {
+        store.appendExchange(ConversationStore.key("s1", "a"), "hello", "hi");
+        store.appendExchange(ConversationStore.key("s2", "a"), "other", "reply");
+
+        store.forgetSession("s1");
+
+        assertEquals(1, store.getCachedConversationCount());
+        verify(repository).deleteByConversationIdStartingWith("s1:");
+        stored.removeIf(turn -> turn.getConversationId().startsWith("s1:"));
+        assertEquals(List.of("new"), texts(store.withUserMessage(ConversationStore.key("s1", "a"), "new")));
+    }
+
+    private static List<String> texts(List<Map<String, Object>> messages) {
+        return messages.stream()
+                .map(message -> (List<?>) message.get("parts"))
+                .map(parts -> (String) ((Map<?, ?>) parts.get(0)).get("text"))
+                .toList();
+    }
+}
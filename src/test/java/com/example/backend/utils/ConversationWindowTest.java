@@ -0,0 +1,134 @@
+package com.example.backend.utils;
+
+import com.example.backend.clients.GeminiClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationWindowTest {
+
+    private final GeminiClient geminiClient = mock(GeminiClient.class);
+    private final ConversationWindow window = new ConversationWindow(geminiClient, 100);
+    private final List<String> prompts = new ArrayList<>();
+    private boolean geminiDown;
+
+    @BeforeEach
+    void configure() {
+        // Every turn below is 29 tokens: 4 for the message and 25 for its 100 characters
+        ReflectionTestUtils.setField(window, "enabled", true);
+        ReflectionTestUtils.setField(window, "maxTokens", 200);
+        ReflectionTestUtils.setField(window, "keepFirstTurns", 2);
+        ReflectionTestUtils.setField(window, "summaryMaxTokens", 30);
+
+        when(geminiClient.generateContent(any())).thenAnswer(invocation -> {
+            if (geminiDown) {
+                return Mono.error(new IllegalStateException("down"));
+            }
+            prompts.add(promptOf(invocation.getArgument(0)));
+            return Mono.just(new GeminiResponse("summary " + prompts.size(), true, 0, 0, 0));
+        });
+    }
+
+    /**
+     * @return A conversation of alternating user and model turns, starting and ending with a user turn
+     */
+    private static List<Map<String, Object>> conversation(int turns) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (int i = 0; i < turns; i++) {
+            String text = String.format("turn %02d ", i);
+            messages.add(Map.of("role", i % 2 == 0 ? "user" : "model",
+                    "parts", List.of(Map.of("text", text + "x".repeat(100 - text.length())))));
+        }
+        return messages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String promptOf(Map<String, Object> body) {
+        Map<String, Object> content = ((List<Map<String, Object>>) body.get("contents")).get(0);
+        return (String) ((List<Map<String, Object>>) content.get("parts")).get(0).get("text");
+    }
+
+    private static String text(Map<String, Object> message) {
+        return TokenEstimator.messageText(message);
+    }
+
+    @Test
+    void conversationWithinTheBudgetIsSentUnchanged() {
+        List<Map<String, Object>> messages = conversation(5);
+
+        assertSame(messages, window.apply(messages).block());
+        verify(geminiClient, never()).generateContent(any());
+    }
+
+    @Test
+    void longConversationKeepsTheFirstAndLatestTurnsWithinTheBudget() {
+        List<Map<String, Object>> messages = conversation(13);
+
+        List<Map<String, Object>> windowed = window.apply(messages).block();
+
+        // Turns 2 to 9 are summarized; the kept turns start with the user turn 10
+        assertEquals(5, windowed.size());
+        assertSame(messages.get(0), windowed.get(0));
+        assertSame(messages.get(1), windowed.get(1));
+        assertEquals("user", windowed.get(2).get("role"));
+        assertTrue(text(windowed.get(2)).startsWith("Summary of the earlier conversation: summary 1"));
+        assertTrue(text(windowed.get(2)).contains("turn 10"));
+        assertEquals(messages.subList(11, 13), windowed.subList(3, 5));
+
+        int tokens = windowed.stream().mapToInt(TokenEstimator::estimate).sum();
+        assertTrue(tokens <= 200, "tokens: " + tokens);
+
+        assertEquals(1, prompts.size());
+        assertTrue(prompts.get(0).contains("turn 02") && prompts.get(0).contains("turn 09"));
+        assertFalse(prompts.get(0).contains("turn 10"));
+    }
+
+    @Test
+    void droppedTurnsAreLeftOutWhenTheSummaryFails() {
+        geminiDown = true;
+        List<Map<String, Object>> messages = conversation(13);
+
+        List<Map<String, Object>> windowed = window.apply(messages).block();
+
+        assertEquals(List.of(messages.get(0), messages.get(1), messages.get(10), messages.get(11), messages.get(12)), windowed);
+    }
+
+    @Test
+    void growingConversationExtendsTheCachedSummary() {
+        window.apply(conversation(13)).block();
+
+        List<Map<String, Object>> windowed = window.apply(conversation(15)).block();
+
+        // Only the turns dropped since the last request are sent, together with the previous summary
+        assertEquals(2, prompts.size());
+        assertTrue(prompts.get(1).contains("summary 1"));
+        assertTrue(prompts.get(1).contains("turn 10") && prompts.get(1).contains("turn 11"));
+        assertFalse(prompts.get(1).contains("turn 09"));
+        assertTrue(text(windowed.get(2)).startsWith("Summary of the earlier conversation: summary 2"));
+    }
+
+    @Test
+    void repeatedConversationReusesItsSummary() {
+        window.apply(conversation(13)).block();
+        window.apply(conversation(13)).block();
+
+        assertEquals(1, prompts.size());
+        assertEquals(1, window.getSummaryCacheHitCount());
+        assertEquals(2, window.getWindowedCount());
+    }
+}
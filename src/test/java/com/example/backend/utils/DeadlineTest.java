@@ -0,0 +1,89 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineTest {
+
+    private static <T> Mono<T> withDeadline(Mono<T> call, Deadline deadline) {
+        return call.contextWrite(context -> context.put(Deadline.class, deadline));
+    }
+
+    @Test
+    void callWithoutDeadlineIsBoundByItsOwnTimeout() {
+        StepVerifier.withVirtualTime(() -> Deadline.bound(Mono.never(), Duration.ofSeconds(10)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(9))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void tighterDeadlineFailsTheCallBeforeItsTimeout() {
+        StepVerifier.withVirtualTime(() -> withDeadline(Deadline.bound(Mono.never(), Duration.ofSeconds(10)),
+                        Deadline.after(Duration.ofSeconds(2))))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(2))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void looserDeadlineLeavesTheCallTimeoutInCharge() {
+        StepVerifier.withVirtualTime(() -> withDeadline(Deadline.bound(Mono.never(), Duration.ofSeconds(2)),
+                        Deadline.after(Duration.ofMinutes(1))))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(2))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void callIsNotStartedOnceTheDeadlinePassed() {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        Mono<String> call = Mono.<String>never().doOnSubscribe(subscription -> subscribed.set(true));
+
+        StepVerifier.create(withDeadline(Deadline.bound(call, Duration.ofSeconds(10)), new Deadline(System.nanoTime() - 1)))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+        assertFalse(subscribed.get());
+    }
+
+    @Test
+    void enforceFailsWorkThatOutlivesTheBudget() {
+        StepVerifier.withVirtualTime(() -> Deadline.enforce(Mono.delay(Duration.ofSeconds(5)), Duration.ofSeconds(3)))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(3))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void enforceKeepsAnEarlierDeadlineOfTheCaller() {
+        Mono<Duration> remaining = Mono.deferContextual(context -> Mono.just(Deadline.current(context).orElseThrow().remaining()));
+
+        StepVerifier.create(Deadline.enforce(Deadline.enforce(remaining, Duration.ofSeconds(30)), Duration.ofSeconds(2)))
+                .assertNext(budget -> assertTrue(budget.compareTo(Duration.ofSeconds(2)) <= 0, budget.toString()))
+                .verifyComplete();
+    }
+
+    @Test
+    void enforcedStreamKeepsTheElementsSentInTime() {
+        StepVerifier.withVirtualTime(() -> Deadline.enforce(Flux.interval(Duration.ofSeconds(1)).take(5), Duration.ofMillis(2500)))
+                .expectSubscription()
+                .thenAwait(Duration.ofMillis(2500))
+                .expectNext(0L, 1L)
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+}
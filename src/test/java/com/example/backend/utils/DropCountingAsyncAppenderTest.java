@@ -0,0 +1,115 @@
+package com.example.backend.utils;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DropCountingAsyncAppenderTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch firstTaken = new CountDownLatch(1);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private DropCountingAsyncAppender appender;
+
+    /**
+     * Starts an appender whose worker takes the first event and then waits until the test releases it,
+     * so the following events stay in the queue.
+     */
+    private void start(int queueSize, int discardingThreshold) throws InterruptedException {
+        AppenderBase<ILoggingEvent> slow = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                firstTaken.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.add(event.getMessage());
+            }
+        };
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        slow.setContext(context);
+        slow.start();
+
+        appender = new DropCountingAsyncAppender();
+        appender.setContext(context);
+        appender.setQueueSize(queueSize);
+        appender.setDiscardingThreshold(discardingThreshold);
+        appender.setNeverBlock(true);
+        appender.addAppender(slow);
+        appender.start();
+
+        appender.doAppend(event(Level.WARN, "first"));
+        assertTrue(firstTaken.await(5, TimeUnit.SECONDS));
+    }
+
+    private ILoggingEvent event(Level level, String message) {
+        return new LoggingEvent(DropCountingAsyncAppenderTest.class.getName(), context.getLogger("test"), level, message, null, null);
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        if (appender != null) {
+            appender.stop();
+        }
+    }
+
+    @Test
+    void eventOfferedToAFullQueueIsCounted() throws InterruptedException {
+        start(2, 0);
+        long before = DropCountingAsyncAppender.getDroppedCount();
+
+        appender.doAppend(event(Level.ERROR, "queued 1"));
+        appender.doAppend(event(Level.ERROR, "queued 2"));
+        appender.doAppend(event(Level.ERROR, "dropped"));
+
+        assertEquals(1, DropCountingAsyncAppender.getDroppedCount() - before);
+        release.countDown();
+        appender.stop();
+        assertEquals(List.of("first", "queued 1", "queued 2"), written);
+    }
+
+    @Test
+    void infoEventDiscardedBelowTheThresholdIsCounted() throws InterruptedException {
+        start(10, 8);
+        long before = DropCountingAsyncAppender.getDroppedCount();
+
+        for (int i = 0; i < 3; i++) {
+            appender.doAppend(event(Level.WARN, "warning " + i));
+        }
+        // Seven places left, below the threshold of eight: INFO is discarded, WARN still queued
+        appender.doAppend(event(Level.INFO, "discarded"));
+        appender.doAppend(event(Level.WARN, "kept"));
+
+        assertEquals(1, DropCountingAsyncAppender.getDroppedCount() - before);
+        assertEquals(4, appender.getNumberOfElementsInQueue());
+    }
+
+    @Test
+    void acceptedEventsAreNotCounted() throws InterruptedException {
+        start(10, 0);
+        long before = DropCountingAsyncAppender.getDroppedCount();
+
+        appender.doAppend(event(Level.INFO, "one"));
+        appender.doAppend(event(Level.DEBUG, "two"));
+
+        assertEquals(0, DropCountingAsyncAppender.getDroppedCount() - before);
+        assertEquals(2, appender.getNumberOfElementsInQueue());
+    }
+}
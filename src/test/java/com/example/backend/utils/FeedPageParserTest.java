@@ -0,0 +1,74 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeedPageParserTest {
+
+    private static FeedPage parse(String json) throws IOException {
+        return FeedPageParser.parse(new StringReader(json));
+    }
+
+    @Test
+    void keepsPostsWithAMessageAndCountsAllPosts() throws IOException {
+        FeedPage page = parse("""
+                {"data": [
+                  {"id": "1_1", "message": "Fresh roast today", "created_time": "2026-03-01T08:30:00+0000"},
+                  {"id": "1_2", "created_time": "2026-02-28T08:30:00+0000"},
+                  {"id": "1_3", "message": null, "created_time": "2026-02-27T08:30:00+0000"},
+                  {"id": "1_4", "message": "New mugs", "attachments": {"data": [{"type": "photo"}]}}
+                ],
+                "paging": {"cursors": {"before": "a", "after": "b"}, "next": "https://graph.facebook.com/v22.0/1/feed?after=b"}}
+                """);
+
+        assertEquals(List.of(
+                new FeedPage.Post("1_1", "Fresh roast today", "2026-03-01T08:30:00+0000"),
+                new FeedPage.Post("1_4", "New mugs", null)), page.posts());
+        assertEquals(4, page.postCount());
+        assertEquals("https://graph.facebook.com/v22.0/1/feed?after=b", page.next());
+    }
+
+    @Test
+    void pageWithoutMessagesStillCountsItsPosts() throws IOException {
+        FeedPage page = parse("""
+                {"data": [{"id": "1_1"}, {"id": "1_2", "story": "updated the cover photo"}],
+                 "paging": {"next": "https://graph.facebook.com/v22.0/1/feed?after=c"}}
+                """);
+
+        assertTrue(page.posts().isEmpty());
+        assertEquals(2, page.postCount());
+        assertEquals("https://graph.facebook.com/v22.0/1/feed?after=c", page.next());
+    }
+
+    @Test
+    void missingOrNullPagingMeansLastPage() throws IOException {
+        assertNull(parse("{\"data\": []}").next());
+        assertNull(parse("{\"data\": [], \"paging\": null}").next());
+        assertNull(parse("{\"data\": [], \"paging\": {\"cursors\": {\"before\": \"a\"}}}").next());
+        assertNull(parse("{\"data\": [], \"paging\": {\"next\": null}}").next());
+    }
+
+    @Test
+    void missingOrMalformedDataHasNoPosts() throws IOException {
+        FeedPage missing = parse("{\"paging\": {\"next\": \"https://graph.facebook.com/next\"}}");
+        FeedPage malformed = parse("{\"data\": {\"id\": \"1_1\"}}");
+
+        assertTrue(missing.posts().isEmpty());
+        assertEquals(0, missing.postCount());
+        assertTrue(malformed.posts().isEmpty());
+        assertEquals(0, malformed.postCount());
+    }
+
+    @Test
+    void invalidJsonFails() {
+        assertThrows(IOException.class, () -> parse("{\"data\": [{\"id\": \"1_1\""));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.backend.utils;
+
+import com.example.backend.clients.GeminiClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GeminiAiServiceTest {
+
+    private static final String POST_REQUEST = "Please post this on my Facebook page";
+    private static final String SCHEDULE_REQUEST = "Schedule a post on my page tomorrow at 9am";
+
+    private final GeminiClient geminiClient = mock(GeminiClient.class);
+    private final ConversationWindow conversationWindow = mock(ConversationWindow.class);
+    private final TraceSpans traceSpans = mock(TraceSpans.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GeminiResponseCache responseCache =
+            new GeminiResponseCache(new MockEnvironment(), meterRegistry, true, Duration.ofMinutes(10), 100);
+    private final GeminiAiService service = new GeminiAiService(geminiClient, new IntentClassifier(0.8),
+            new StreamingMetrics(meterRegistry), conversationWindow, responseCache, meterRegistry, traceSpans);
+
+    private final List<String> prompts = new ArrayList<>();
+    private String intentAnswer = "true";
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void stubGemini() {
+        when(traceSpans.span(anyString(), any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(1));
+        when(conversationWindow.apply(anyList())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(geminiClient.generateContent(any())).thenAnswer(invocation -> {
+            List<Map<String, Object>> contents = (List<Map<String, Object>>) ((Map<String, Object>) invocation.getArgument(0)).get("contents");
+            String prompt = TokenEstimator.messageText(contents.get(contents.size() - 1));
+            prompts.add(prompt);
+            String text = prompt.startsWith("Does the following message") ? intentAnswer : "Happy to help!";
+            return Mono.just(new GeminiResponse(text, true, 0, 0, 0));
+        });
+    }
+
+    private ChatClassification classify(String text) {
+        return service.classifyAndRespond(service.createSingleUserMessage(text), text).block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void confirmedPostGuessIsServedFromTheCacheWhenRepeated() {
+        assertEquals(ChatClassification.post(), classify(POST_REQUEST));
+        assertEquals(ChatClassification.post(), classify(POST_REQUEST));
+
+        assertEquals(1, prompts.size());
+        assertEquals(1, meterRegistry.counter("gemini.cache.requests", "site", "post-intent", "result", "hit").count());
+    }
+
+    @Test
+    void postGuessGeminiDoesNotConfirmIsAnsweredAsChat() {
+        intentAnswer = "false";
+
+        assertEquals(ChatClassification.chat("Happy to help!"), classify(POST_REQUEST));
+        assertEquals(2, prompts.size());
+        assertEquals(POST_REQUEST, prompts.get(1));
+    }
+
+    @Test
+    void confirmedScheduledPostKeepsTheLocallyParsedTime() {
+        intentAnswer = "2030-01-01 10:00";
+        String localTime = new IntentClassifier(0.8).classify(SCHEDULE_REQUEST).scheduledTime();
+
+        assertEquals(ChatClassification.scheduledPost(localTime), classify(SCHEDULE_REQUEST));
+        assertEquals(1, prompts.size());
+    }
+
+    @Test
+    void confidentChatOnlyGeneratesTheReply() {
+        assertEquals(ChatClassification.chat("Happy to help!"), classify("Hi, how are you today?"));
+
+        assertEquals(List.of("Hi, how are you today?"), prompts);
+    }
+}
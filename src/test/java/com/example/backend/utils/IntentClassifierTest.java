@@ -0,0 +1,122 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntentClassifierTest {
+
+    // A Monday
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 10, 0);
+
+    private final IntentClassifier classifier = new IntentClassifier(0.8);
+
+    @Test
+    void requestsPhrasedAsQuestionsAreNotConfidentPosts() {
+        for (String message : new String[]{
+                "Can you help me write a post for my page?",
+                "could you share some ideas for my feed?",
+                "Can you post something on my page",
+                "What should we post on Facebook?"}) {
+            IntentClassifier.Prediction prediction = classifier.classify(message, NOW);
+            assertNotEquals(ChatIntent.POST, prediction.intent(), message);
+            assertFalse(prediction.confident(), message);
+        }
+    }
+
+    @Test
+    void imperativePostRequestIsAConfidentPost() {
+        IntentClassifier.Prediction prediction = classifier.classify("Please post this on my Facebook page", NOW);
+
+        assertEquals(ChatIntent.POST, prediction.intent());
+        assertTrue(prediction.confident());
+    }
+
+    @Test
+    void plainEnglishChatIsConfidentChat() {
+        IntentClassifier.Prediction prediction = classifier.classify("Hi, how are you today?", NOW);
+
+        assertEquals(ChatIntent.CHAT, prediction.intent());
+        assertTrue(prediction.confident());
+    }
+
+    @Test
+    void otherLanguagesAreLeftToGemini() {
+        for (String message : new String[]{"Bonjour, comment ça va ?", "שלום, מה שלומך?", "Publica esto en mi página"}) {
+            assertFalse(classifier.classify(message, NOW).confident(), message);
+        }
+    }
+
+    @Test
+    void mentioningPostsInConversationIsChat() {
+        IntentClassifier.Prediction prediction = classifier.classify("I liked the post you wrote yesterday, how did you come up with it?", NOW);
+
+        assertEquals(ChatIntent.CHAT, prediction.intent());
+    }
+
+    @Test
+    void parsesDayAndClockTime() {
+        IntentClassifier.Prediction prediction = classifier.classify("Schedule a post on my page tomorrow at 9am", NOW);
+
+        assertEquals(ChatIntent.SCHEDULED_POST, prediction.intent());
+        assertEquals("2026-03-03 09:00", prediction.scheduledTime());
+        assertTrue(prediction.confident());
+    }
+
+    @Test
+    void parsesNextWeekdayInTheAfternoon() {
+        IntentClassifier.Prediction prediction = classifier.classify("Publish it to our page next friday at 5pm", NOW);
+
+        assertEquals(ChatIntent.SCHEDULED_POST, prediction.intent());
+        assertEquals("2026-03-06 17:00", prediction.scheduledTime());
+    }
+
+    @Test
+    void parsesRelativeOffset() {
+        IntentClassifier.Prediction prediction = classifier.classify("Post this on my page in 2 hours", NOW);
+
+        assertEquals(ChatIntent.SCHEDULED_POST, prediction.intent());
+        assertEquals("2026-03-02 12:00", prediction.scheduledTime());
+    }
+
+    @Test
+    void parsesAbsoluteDateTime() {
+        IntentClassifier.Prediction prediction = classifier.classify("Schedule a post for 2026-03-10 14:30", NOW);
+
+        assertEquals(ChatIntent.SCHEDULED_POST, prediction.intent());
+        assertEquals("2026-03-10 14:30", prediction.scheduledTime());
+    }
+
+    @Test
+    void scheduleWithoutTimeIsNotConfident() {
+        IntentClassifier.Prediction prediction = classifier.classify("Schedule a post on my page for later", NOW);
+
+        assertEquals(ChatIntent.SCHEDULED_POST, prediction.intent());
+        assertNull(prediction.scheduledTime());
+        assertFalse(prediction.confident());
+    }
+
+    @Test
+    void timeInThePastIsNotConfident() {
+        IntentClassifier.Prediction prediction = classifier.classify("Schedule a post on my page for 2026-03-01 09:00", NOW);
+
+        assertEquals(ChatIntent.SCHEDULED_POST, prediction.intent());
+        assertFalse(prediction.confident());
+    }
+
+    @Test
+    void countsLocalHitsAndFallbacks() {
+        classifier.classify("Hi there, thanks for the help", NOW);
+        classifier.classify("Can you help me write a post for my page?", NOW);
+
+        assertEquals(2, classifier.getClassifiedCount());
+        assertEquals(1, classifier.getLocalHitCount());
+        assertEquals(1, classifier.getLlmFallbackCount());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NearDuplicateIndexTest {
+
+    // The facebook.post.min-similarity default
+    private static final double MIN_SIMILARITY = 0.3;
+
+    private static final List<String> POSTS = List.of(
+            "Start your morning with our freshly roasted Ethiopian beans! Visit us today.",
+            "Our pumpkin spice latte is back for the season, grab one before it's gone!",
+            "Cold brew Fridays: every cold brew is half price all day long.",
+            "Meet Dana, our new barista, who makes the best flat white in town.",
+            "Rainy day? Warm up with a hot chocolate and a fresh croissant at our cafe.",
+            "We now offer oat milk at no extra charge in every drink.");
+
+    private final NearDuplicateIndex index = NearDuplicateIndex.of(POSTS);
+
+    @Test
+    void rephrasedPostsAreNearDuplicates() {
+        String[][] paraphrases = {
+                {"Start your day with our fresh-roasted Ethiopian beans. Come visit us today!", POSTS.get(0)},
+                {"The pumpkin spice latte is back this season - grab yours before they're gone!", POSTS.get(1)},
+                {"It's Cold Brew Friday! All cold brews are half price the whole day.", POSTS.get(2)},
+                {"Say hello to Dana, our newest barista, making the best flat whites in town!", POSTS.get(3)},
+                {"Rainy weather outside? Warm up at our cafe with a hot chocolate and a freshly baked croissant.", POSTS.get(4)},
+                {"Oat milk is now free of extra charge in all of our drinks!", POSTS.get(5)}};
+
+        for (String[] paraphrase : paraphrases) {
+            assertEquals(paraphrase[1], index.findNearDuplicate(paraphrase[0], MIN_SIMILARITY), paraphrase[0]);
+        }
+    }
+
+    @Test
+    void copiesDifferingInCaseAndPunctuationAreNearDuplicates() {
+        assertEquals(POSTS.get(2), index.findNearDuplicate("cold brew fridays - every cold brew is half price, all day long!!", MIN_SIMILARITY));
+    }
+
+    @Test
+    void distinctPostsOfTheSamePageAreNotNearDuplicates() {
+        for (String post : List.of(
+                "Join our latte art workshop this Saturday, seats are limited so book now.",
+                "Thank you for 10,000 followers! Enjoy a free cookie with any coffee this week.",
+                "Our new single origin from Colombia has notes of caramel and red apple.",
+                "Start your weekend with our brunch menu, served until 2pm every Saturday and Sunday.",
+                "Try our new house blend, roasted fresh every morning in our own roastery.",
+                "Visit us today for a fresh cup of coffee and a warm welcome.")) {
+            assertNull(index.findNearDuplicate(post, MIN_SIMILARITY), post);
+        }
+    }
+
+    @Test
+    void mostSimilarPostIsReturned() {
+        NearDuplicateIndex similarPosts = NearDuplicateIndex.of(List.of(
+                "Cold brew is half price today",
+                "Cold brew Fridays: every cold brew is half price all day long."));
+
+        assertEquals("Cold brew Fridays: every cold brew is half price all day long.",
+                similarPosts.findNearDuplicate("Cold brew Friday: every cold brew half price all day long", MIN_SIMILARITY));
+    }
+
+    @Test
+    void newestPostIsIndexedAndTheOldestDropped() {
+        NearDuplicateIndex updated = index.withNewest("Join our latte art workshop this Saturday!", POSTS.size());
+
+        assertEquals(POSTS.size(), updated.size());
+        assertEquals("Join our latte art workshop this Saturday!", updated.newest(1).get(0));
+        assertEquals("Join our latte art workshop this Saturday!",
+                updated.findNearDuplicate("Join the latte art workshop this Saturday", MIN_SIMILARITY));
+        assertNull(updated.findNearDuplicate(POSTS.get(5), MIN_SIMILARITY));
+        assertEquals(POSTS, index.messages());
+    }
+
+    @Test
+    void emptyIndexHasNoDuplicates() {
+        assertNull(NearDuplicateIndex.of(List.of()).findNearDuplicate(POSTS.get(0), MIN_SIMILARITY));
+    }
+}
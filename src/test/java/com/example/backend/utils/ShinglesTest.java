@@ -0,0 +1,51 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShinglesTest {
+
+    @Test
+    void caseAndPunctuationAreIgnored() {
+        assertArrayEquals(Shingles.of("Fresh coffee, today!"), Shingles.of("fresh   COFFEE today"));
+    }
+
+    @Test
+    void shinglesAreDistinctAndSorted() {
+        long[] shingles = Shingles.of("la la la");
+
+        // " la", "la ", "a l"
+        assertEquals(3, shingles.length);
+        for (int i = 1; i < shingles.length; i++) {
+            assertTrue(shingles[i - 1] < shingles[i]);
+        }
+    }
+
+    @Test
+    void similarityIsJaccardOfTheShingles() {
+        assertEquals(1.0, Shingles.similarity(Shingles.of("cold brew"), Shingles.of("Cold brew!")), 1e-9);
+        assertEquals(0.0, Shingles.similarity(Shingles.of("abc"), Shingles.of("xyz")), 1e-9);
+        // " ab", "abc", "bc " and " ab", "abd", "bd ": one shared out of five
+        assertEquals(0.2, Shingles.similarity(Shingles.of("abc"), Shingles.of("abd")), 1e-9);
+    }
+
+    @Test
+    void textWithoutWordsHasNoShinglesAndNoSimilarity() {
+        assertEquals(0, Shingles.of(" ?! ").length);
+        assertEquals(0.0, Shingles.similarity(Shingles.of(""), Shingles.of("")), 1e-9);
+    }
+
+    @Test
+    void otherScriptsAreShingledToo() {
+        assertTrue(Shingles.similarity(Shingles.of("קפה טרי כל בוקר"), Shingles.of("קפה טרי בכל בוקר!")) > 0.5);
+    }
+
+    @Test
+    void sizesBoundTheSimilarity() {
+        assertEquals(0.5, Shingles.maxSimilarity(10, 20), 1e-9);
+        assertEquals(0.0, Shingles.maxSimilarity(0, 0), 1e-9);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.backend.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String> singleFlight = new SingleFlight<>("test", meterRegistry);
+
+    private final Sinks.One<String> result = Sinks.one();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private Mono<String> call() {
+        return singleFlight.execute("key", () -> {
+            started.incrementAndGet();
+            return result.asMono().doOnCancel(() -> cancelled.set(true));
+        });
+    }
+
+    @Test
+    void sharedResultReachesEveryWaiter() {
+        StepVerifier first = StepVerifier.create(call()).expectNext("reply").expectComplete().verifyLater();
+        StepVerifier second = StepVerifier.create(call()).expectNext("reply").expectComplete().verifyLater();
+
+        result.tryEmitValue("reply");
+
+        first.verify(Duration.ofSeconds(1));
+        second.verify(Duration.ofSeconds(1));
+        assertEquals(1, started.get());
+        assertEquals(1, meterRegistry.counter("single.flight.coalesced", "name", "test").count());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void sharedErrorReachesEveryWaiter() {
+        StepVerifier first = StepVerifier.create(call()).expectErrorMessage("upstream failed").verifyLater();
+        StepVerifier second = StepVerifier.create(call()).expectErrorMessage("upstream failed").verifyLater();
+
+        result.tryEmitError(new IllegalStateException("upstream failed"));
+
+        first.verify(Duration.ofSeconds(1));
+        second.verify(Duration.ofSeconds(1));
+        assertEquals(1, started.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void cancellingOneWaiterKeepsTheCallForTheOthers() {
+        Disposable first = call().subscribe();
+        StepVerifier second = StepVerifier.create(call()).expectNext("reply").expectComplete().verifyLater();
+
+        first.dispose();
+        assertFalse(cancelled.get());
+
+        result.tryEmitValue("reply");
+        second.verify(Duration.ofSeconds(1));
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    void callIsCancelledOnceEveryWaiterCancelled() {
+        Disposable first = call().subscribe();
+        Disposable second = call().subscribe();
+
+        first.dispose();
+        second.dispose();
+
+        assertTrue(cancelled.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void waiterStopsAtItsOwnDeadlineWhileTheCallContinues() {
+        StepVerifier second = StepVerifier.create(call()).expectNext("reply").expectComplete().verifyLater();
+
+        StepVerifier.withVirtualTime(() -> Deadline.enforce(call(), Duration.ofSeconds(5)))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(5))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertFalse(cancelled.get());
+        result.tryEmitValue("reply");
+        second.verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void finishedCallIsNotReused() {
+        StepVerifier.create(singleFlight.execute("key", () -> Mono.just("first"))).expectNext("first").verifyComplete();
+        StepVerifier.create(singleFlight.execute("key", () -> Mono.just("second"))).expectNext("second").verifyComplete();
+
+        assertEquals(2, meterRegistry.counter("single.flight.calls", "name", "test").count());
+    }
+}